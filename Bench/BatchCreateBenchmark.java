@@ -0,0 +1,66 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Link creation throughput: a loop of {@code createShortLink} calls against
+ * {@code createShortLinks} batches, in memory and with a {@link WriteAheadLog}.
+ * Durable single creations wait for their own group commit, so that run uses fewer links.
+ * <p>
+ * Usage: {@code java -cp <classes> BatchCreateBenchmark [links] [batchSize]}.
+ */
+public class BatchCreateBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int links = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        String userId = UUID.randomUUID().toString();
+        List<LinkRequest> requests = new ArrayList<>(links);
+        for (int i = 0; i < links; i++) {
+            requests.add(new LinkRequest("https://example.com/campaign/" + i, userId, 100));
+        }
+
+        for (int round = 0; round < 2; round++) {
+            boolean warmup = round == 0;
+            double single = run("memory, single", new ShortLinkService(), requests, 1, warmup);
+            double batch = run("memory, batch", new ShortLinkService(), requests, batchSize, warmup);
+            if (!warmup) {
+                System.out.printf("Speedup: %.1fx%n", batch / single);
+            }
+        }
+
+        int durableSingles = Math.min(links, 2_000);
+        double single = run("log, single", durable(), requests.subList(0, durableSingles), 1, false);
+        double batch = run("log, batch", durable(), requests, batchSize, false);
+        System.out.printf("Speedup: %.1fx%n", batch / single);
+    }
+
+    private static ShortLinkService durable() throws Exception {
+        Path log = Files.createTempFile("batch-bench", ".wal");
+        Files.delete(log);
+        log.toFile().deleteOnExit();
+        return new ShortLinkService(WriteAheadLog.open(log, 10), new HeapLinkStorage());
+    }
+
+    private static double run(String name, ShortLinkService service, List<LinkRequest> requests, int batchSize,
+                              boolean warmup) {
+        long start = System.nanoTime();
+        if (batchSize == 1) {
+            for (LinkRequest request : requests) {
+                service.createShortLink(request.getLongUrl(), request.getUserId(), request.getClickLimit());
+            }
+        } else {
+            for (int from = 0; from < requests.size(); from += batchSize) {
+                service.createShortLinks(requests.subList(from, Math.min(from + batchSize, requests.size())));
+            }
+        }
+        double perSecond = requests.size() / ((System.nanoTime() - start) / 1e9);
+        service.shutdown();
+        if (!warmup) {
+            System.out.printf("%-16s %,9d links %,12.0f links/s%n", name, requests.size(), perSecond);
+        }
+        return perSecond;
+    }
+}
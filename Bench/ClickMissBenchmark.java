@@ -0,0 +1,95 @@
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Miss-path throughput of the redirect API: unknown codes, as sent by scanners,
+ * through the throwing {@code clickShortLink}, through the {@code click} fast path, and
+ * through {@code click} on a service whose index has a cuckoo filter of the live codes.
+ * <p>
+ * Usage: {@code java -cp <classes> ClickMissBenchmark [threads] [seconds]}.
+ */
+public class ClickMissBenchmark {
+    private static final int CODES = 4096;
+
+    interface Operation {
+        void run(String code);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        ShortLinkService service = new ShortLinkService();
+        ShortLinkService filtered = new ShortLinkService(new FeistelShortCodeGenerator(), new HeapLinkStorage(),
+                new NotificationService(), null, null, 0, 0, true);
+        String userId = UUID.randomUUID().toString();
+        for (int i = 0; i < 100_000; i++) {
+            service.createShortLink("https://example.com/" + i, userId, 100);
+            filtered.createShortLink("https://example.com/" + i, userId, 100);
+        }
+        String[] misses = new String[CODES];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < CODES; i++) {
+            misses[i] = ShortCode.decode(random.nextLong(ShortCode.SPACE));
+        }
+
+        Operation throwing = code -> {
+            try {
+                service.clickShortLink(code, userId);
+            } catch (Exception e) {
+                // Expected miss
+            }
+        };
+        Operation result = code -> {
+            if (service.click(code).isOk()) {
+                throw new IllegalStateException("Unexpected hit");
+            }
+        };
+
+        Operation filteredResult = code -> {
+            if (filtered.click(code).isOk()) {
+                throw new IllegalStateException("Unexpected hit");
+            }
+        };
+
+        measure("warmup", throwing, misses, threads, 1);
+        measure("warmup", result, misses, threads, 1);
+        measure("warmup", filteredResult, misses, threads, 1);
+        double before = measure("clickShortLink (throws)", throwing, misses, threads, seconds);
+        double after = measure("click (ClickResult)", result, misses, threads, seconds);
+        System.out.printf("Speedup: %.1fx%n", after / before);
+        double withFilter = measure("click (code filter)", filteredResult, misses, threads, seconds);
+        LinkIndex.FilterMetrics metrics = filtered.getCodeFilterMetrics();
+        System.out.printf("Filter: %.2fx, false positives %.4f%%, %.1f bytes/code%n", withFilter / after,
+                metrics.getFalsePositiveRate() * 100, metrics.getBytesPerKey());
+        service.shutdown();
+        filtered.shutdown();
+    }
+
+    private static double measure(String name, Operation operation, String[] codes, int threads, int seconds)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LongAdder ops = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 31;
+            executor.submit(() -> {
+                long count = 0;
+                int i = offset;
+                while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                    operation.run(codes[i++ & (CODES - 1)]);
+                    count++;
+                }
+                ops.add(count);
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        double perSecond = ops.sum() / (double) seconds;
+        if (!name.equals("warmup")) {
+            System.out.printf("%-26s %2d threads %,15.0f ops/s%n", name, threads, perSecond);
+        }
+        return perSecond;
+    }
+}
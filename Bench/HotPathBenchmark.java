@@ -0,0 +1,336 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Microbenchmarks of the {@link ShortLinkService} hot paths, each run for every combination
+ * of thread count and store size. For every combination, a fresh service is filled with
+ * {@code store} links, warmed up, and measured over several timed iterations. The result
+ * is the mean and standard deviation of the iteration throughputs.
+ * <pre>
+ * create         createShortLink into a store of the given size
+ * click-hit      click on a live link
+ * click-miss     click on an unknown code
+ * click-expired  click on an expired link, which removes it (one link per click)
+ * click-last     click that consumes the last click and removes the link (one link per click)
+ * list-page      first page of 10 links of a user owning {@code store} links
+ * list-all       all links of a user owning {@code store} links
+ * codegen        code generation next to a store of the given size
+ * </pre>
+ * The one-link-per-click suites time a prepared pool of links per iteration instead of a
+ * fixed time. Notifications are discarded.
+ * <p>
+ * Usage: {@code java -cp <classes> HotPathBenchmark [suite...] [--threads=1,4] [--store=10000,1000000]
+ * [--warmup=2] [--iterations=5] [--seconds=1]}.
+ */
+public class HotPathBenchmark {
+    private static final int POOL = 50_000;
+    private static final int CODES = 1 << 16;
+
+    /** One suite on one prepared service; {@link #op} runs on several threads at once. */
+    private abstract static class Suite {
+        final String userId = UUID.randomUUID().toString();
+        ShortLinkService service;
+
+        abstract void setup(int store);
+
+        /** Prepares the links consumed by one iteration; one-link-per-click suites only. */
+        void prepare() {
+        }
+
+        boolean pooled() {
+            return false;
+        }
+
+        abstract long op(int i);
+
+        void teardown() {
+            service.shutdown();
+        }
+
+        long[] fill(int store, int clickLimit) {
+            List<LinkRequest> batch = new ArrayList<>();
+            long[] codes = new long[store];
+            int n = 0;
+            for (int i = 0; i < store; i++) {
+                batch.add(new LinkRequest("https://example.com/" + i, userId, clickLimit));
+                if (batch.size() == 10_000 || i == store - 1) {
+                    for (String code : service.createShortLinks(batch)) {
+                        codes[n++] = ShortCode.encode(code);
+                    }
+                    batch.clear();
+                }
+            }
+            return codes;
+        }
+    }
+
+    private static final Map<String, Supplier<Suite>> SUITES = Map.of(
+            "create", () -> new Suite() {
+                void setup(int store) {
+                    service = quiet(0);
+                    fill(store, 100);
+                }
+
+                long op(int i) {
+                    return service.createShortLink("https://example.com/new", userId, 100).length();
+                }
+            },
+            "click-hit", () -> new Suite() {
+                long[] codes;
+
+                void setup(int store) {
+                    service = quiet(0);
+                    codes = fill(store, Integer.MAX_VALUE);
+                }
+
+                long op(int i) {
+                    return service.click(codes[i % codes.length]).isOk() ? 1 : check("hit");
+                }
+            },
+            "click-miss", () -> new Suite() {
+                final long[] misses = new long[CODES];
+
+                void setup(int store) {
+                    service = quiet(0);
+                    fill(store, 100);
+                    for (int i = 0; i < CODES; i++) {
+                        misses[i] = ThreadLocalRandom.current().nextLong(ShortCode.SPACE);
+                    }
+                }
+
+                long op(int i) {
+                    return service.click(misses[i & (CODES - 1)]).isOk() ? check("miss") : 1;
+                }
+            },
+            "click-expired", () -> new Suite() {
+                long[] pool;
+
+                void setup(int store) {
+                    // Lazy expiry with the smallest budget: expired links wait for their click
+                    service = quiet(1);
+                    fill(store, 100);
+                }
+
+                void prepare() {
+                    pool = created(service, userId, 1, Duration.ofMillis(1));
+                    sleep(2 * CoarseClock.RESOLUTION_MILLIS);
+                }
+
+                boolean pooled() {
+                    return true;
+                }
+
+                long op(int i) {
+                    return service.click(pool[i]).getStatus().ordinal();
+                }
+            },
+            "click-last", () -> new Suite() {
+                long[] pool;
+
+                void setup(int store) {
+                    service = quiet(0);
+                    fill(store, 100);
+                }
+
+                void prepare() {
+                    pool = created(service, userId, 1, ShortLinkService.DEFAULT_TTL);
+                }
+
+                boolean pooled() {
+                    return true;
+                }
+
+                long op(int i) {
+                    return service.click(pool[i]).isOk() ? 1 : check("last click");
+                }
+            },
+            "list-page", () -> new Suite() {
+                void setup(int store) {
+                    service = quiet(0);
+                    fill(store, 100);
+                }
+
+                long op(int i) {
+                    return service.getUserLinks(userId, null, 10).getLinks().size();
+                }
+            },
+            "list-all", () -> new Suite() {
+                void setup(int store) {
+                    service = quiet(0);
+                    fill(store, 100);
+                }
+
+                long op(int i) {
+                    return service.getUserLinks(userId).size();
+                }
+            },
+            "codegen", () -> new Suite() {
+                final FeistelShortCodeGenerator generator = new FeistelShortCodeGenerator();
+
+                void setup(int store) {
+                    service = new ShortLinkService(generator, new HeapLinkStorage(), new QuietNotifications());
+                    fill(store, 100);
+                }
+
+                long op(int i) {
+                    return generator.next();
+                }
+            });
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int[] threads = {1, Runtime.getRuntime().availableProcessors()};
+        int[] stores = {10_000, 1_000_000};
+        int warmup = 2;
+        int iterations = 5;
+        double seconds = 1;
+        List<String> suites = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                threads = ints(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--store=")) {
+                stores = ints(arg.substring("--store=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            } else if (arg.startsWith("--seconds=")) {
+                seconds = Double.parseDouble(arg.substring("--seconds=".length()));
+            } else if (SUITES.containsKey(arg)) {
+                suites.add(arg);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg + ", suites: " + SUITES.keySet());
+            }
+        }
+        if (suites.isEmpty()) {
+            suites = List.of("create", "click-hit", "click-miss", "click-expired", "click-last",
+                    "list-page", "list-all", "codegen");
+        }
+        threads = Arrays.stream(threads).distinct().toArray();
+
+        System.out.printf("%-14s %7s %10s %16s %12s%n", "suite", "threads", "store", "ops/s", "± stddev");
+        for (String name : suites) {
+            for (int store : stores) {
+                for (int threadCount : threads) {
+                    Suite suite = SUITES.get(name).get();
+                    suite.setup(store);
+                    for (int i = 0; i < warmup; i++) {
+                        iteration(suite, threadCount, seconds);
+                    }
+                    double[] results = new double[iterations];
+                    for (int i = 0; i < iterations; i++) {
+                        results[i] = iteration(suite, threadCount, seconds);
+                    }
+                    suite.teardown();
+                    double mean = Arrays.stream(results).average().orElse(0);
+                    double variance = Arrays.stream(results).map(r -> (r - mean) * (r - mean)).sum()
+                            / Math.max(1, iterations - 1);
+                    System.out.printf("%-14s %7d %,10d %,16.0f %,12.0f%n", name, threadCount, store, mean,
+                            Math.sqrt(variance));
+                }
+            }
+        }
+    }
+
+    /** Ops per second of one iteration: a fixed time, or one pass over the prepared pool. */
+    private static double iteration(Suite suite, int threadCount, double seconds) throws InterruptedException {
+        suite.prepare();
+        LongAdder ops = new LongAdder();
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        Thread[] workers = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            int seed = t * 7919;
+            workers[t] = new Thread(() -> {
+                long acc = 0;
+                long count = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (suite.pooled()) {
+                    for (int i; (i = next.getAndIncrement()) < POOL; count++) {
+                        acc += suite.op(i);
+                    }
+                } else {
+                    int i = seed;
+                    while ((count & 255) != 0 || System.nanoTime() < deadline[0]) {
+                        acc += suite.op(i++ & Integer.MAX_VALUE);
+                        count++;
+                    }
+                }
+                ops.add(count);
+                sink += acc;
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + (long) (seconds * 1e9);
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum() * 1e9 / (System.nanoTime() - begin);
+    }
+
+    private static ShortLinkService quiet(long lazyExpiryBudgetMicros) {
+        return new ShortLinkService(new FeistelShortCodeGenerator(), new HeapLinkStorage(),
+                new QuietNotifications(), null, null, lazyExpiryBudgetMicros);
+    }
+
+    private static long[] created(ShortLinkService service, String userId, int clickLimit, Duration ttl) {
+        List<LinkRequest> requests = new ArrayList<>(POOL);
+        for (int i = 0; i < POOL; i++) {
+            requests.add(new LinkRequest("https://example.com/pool/" + i, userId, clickLimit, ttl));
+        }
+        List<String> codes = service.createShortLinks(requests);
+        long[] pool = new long[POOL];
+        for (int i = 0; i < POOL; i++) {
+            pool[i] = ShortCode.encode(codes.get(i));
+        }
+        return pool;
+    }
+
+    private static long check(String what) {
+        throw new IllegalStateException("Unexpected result for " + what);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int[] ints(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static final class QuietNotifications extends NotificationService {
+        @Override
+        public void notifyClickLimitReached(String userId, String shortCode) {
+        }
+
+        @Override
+        public void notifyExpiry(String userId, String shortCode) {
+        }
+
+        @Override
+        public void notifyExpiry(List<ShortLink> links) {
+        }
+    }
+}
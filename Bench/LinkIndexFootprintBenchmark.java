@@ -0,0 +1,54 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap footprint of the link index versus the previous {@code ConcurrentHashMap<String, ShortLink>}
+ * key structure. Only the indexing overhead is measured: both sides point at the same
+ * shared value, so the link records themselves are excluded.
+ * <p>
+ * Usage: {@code java -Xmx4g -cp <classes> LinkIndexFootprintBenchmark [links]} (default 10M).
+ */
+public class LinkIndexFootprintBenchmark {
+    private static final Object VALUE = new Object();
+
+    public static void main(String[] args) {
+        int links = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        FeistelShortCodeGenerator generator = new FeistelShortCodeGenerator(1, 0);
+        long[] codes = new long[links];
+        for (int i = 0; i < links; i++) {
+            codes[i] = generator.next();
+        }
+
+        long before = usedHeap();
+        Map<String, Object> map = new ConcurrentHashMap<>();
+        for (long code : codes) {
+            map.put(ShortCode.decode(code), VALUE);
+        }
+        long mapBytes = usedHeap() - before;
+        report("ConcurrentHashMap<String, ?>", map.size(), mapBytes);
+        map = null;
+
+        before = usedHeap();
+        LinkIndex index = new LinkIndex();
+        for (int i = 0; i < links; i++) {
+            index.put(codes[i], i);
+        }
+        long indexBytes = usedHeap() - before;
+        report("LinkIndex", index.size(), indexBytes);
+        System.out.printf("Index arrays (calculated): %,d bytes%n", index.footprintBytes());
+        System.out.printf("Savings: %.1fx%n", (double) mapBytes / indexBytes);
+    }
+
+    private static void report(String name, int size, long bytes) {
+        System.out.printf("%-30s %,12d entries %,15d bytes %8.1f bytes/entry%n",
+                name, size, bytes, (double) bytes / size);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,409 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sustained mixed load on a {@link ShortLinkService}: creates, clicks and list pages in a
+ * configurable ratio, with click popularity drawn from a Zipf distribution over the
+ * preloaded links. Latencies go to one log-linear histogram per worker and operation,
+ * which are merged into a percentile report at the end.
+ * <p>
+ * Closed loop ({@code --rate=0}) runs each worker back to back and measures service time.
+ * Open loop ({@code --rate=N}) gives every worker a fixed schedule so that together they
+ * start N operations per second. Latency is measured from the scheduled start rather than
+ * the actual one, so a stall also counts against the operations queued behind it and is
+ * not hidden by coordinated omission.
+ * <p>
+ * With {@code --target=jdk} or {@code --target=nio}, clicks go over keep-alive connections to
+ * {@link RedirectServer} or {@link NioRedirectServer}, one per worker. The redirect servers
+ * have no create or list endpoints, so those still run in-process.
+ * <p>
+ * Usage: {@code java -cp <classes> LoadGenerator [--target=inproc|jdk|nio] [--threads=8]
+ * [--seconds=30] [--warmup=5] [--rate=0] [--mix=create:click:list] [--links=100000]
+ * [--users=1000] [--zipf=0.99] [--off-heap] [--hot-cache=MB]}.
+ */
+public class LoadGenerator {
+    private static final String[] OPERATIONS = {"create", "click", "list"};
+    private static final int CREATE = 0;
+    private static final int CLICK = 1;
+    private static final int LIST = 2;
+    private static final int PAGE_SIZE = 20;
+
+    private final ShortLinkService service;
+    private final String[] users;
+    private final long[] codes;
+    private final byte[][] requests;
+    private final double[] zipfCdf;
+    private final int[] mix;
+    private final int port;
+
+    private LoadGenerator(ShortLinkService service, String[] users, long[] codes, double zipf, int[] mix, int port) {
+        this.service = service;
+        this.users = users;
+        this.codes = codes;
+        this.mix = mix;
+        this.port = port;
+        this.zipfCdf = zipfCdf(codes.length, zipf);
+        this.requests = new byte[port > 0 ? codes.length : 0][];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = ("GET /" + ShortCode.decode(codes[i]) + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String target = "inproc";
+        int threads = 8;
+        int seconds = 30;
+        int warmup = 5;
+        long rate = 0;
+        int[] mix = {5, 90, 5};
+        int links = 100_000;
+        int userCount = 1000;
+        double zipf = 0.99;
+        boolean offHeap = false;
+        long hotCacheBytes = 0;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--target=")) {
+                target = value;
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(value);
+            } else if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(value);
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(value);
+            } else if (arg.startsWith("--rate=")) {
+                rate = Long.parseLong(value);
+            } else if (arg.startsWith("--mix=")) {
+                mix = Arrays.stream(value.split(":")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--links=")) {
+                links = Integer.parseInt(value);
+            } else if (arg.startsWith("--users=")) {
+                userCount = Integer.parseInt(value);
+            } else if (arg.startsWith("--zipf=")) {
+                zipf = Double.parseDouble(value);
+            } else if (arg.startsWith("--hot-cache=")) {
+                hotCacheBytes = Long.parseLong(value) << 20;
+            } else if (arg.equals("--off-heap")) {
+                offHeap = true;
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (mix.length != OPERATIONS.length || Arrays.stream(mix).sum() <= 0 || Arrays.stream(mix).anyMatch(w -> w < 0)) {
+            throw new IllegalArgumentException("--mix must be three non-negative weights create:click:list");
+        }
+
+        ShortLinkService service = new ShortLinkService(new FeistelShortCodeGenerator(),
+                offHeap ? new OffHeapLinkStorage() : new HeapLinkStorage(), new QuietNotifications(), null, null, 0,
+                hotCacheBytes);
+        String[] users = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            users[i] = UUID.randomUUID().toString();
+        }
+        long[] codes = preload(service, users, links);
+
+        RedirectServer server = null;
+        NioRedirectServer nioServer = null;
+        int port = 0;
+        if (target.equals("jdk")) {
+            server = new RedirectServer(service, 0);
+            server.start();
+            port = server.getPort();
+        } else if (target.equals("nio")) {
+            nioServer = new NioRedirectServer(service, 0);
+            nioServer.start();
+            port = nioServer.getPort();
+        } else if (!target.equals("inproc")) {
+            throw new IllegalArgumentException("Unknown target: " + target);
+        }
+
+        LoadGenerator generator = new LoadGenerator(service, users, codes, zipf, mix, port);
+        if (warmup > 0) {
+            generator.run(threads, warmup, rate);
+        }
+        Histogram[] result = generator.run(threads, seconds, rate);
+
+        System.out.printf("target %s, %d threads, %s, mix %s, %,d links, %,d users, zipf %.2f, %d s%n",
+                target, threads, rate > 0 ? String.format("open loop %,d ops/s", rate) : "closed loop",
+                Arrays.toString(mix), links, userCount, zipf, seconds);
+        report(result, seconds);
+        HotLinkCache.Metrics cache = service.getHotCacheMetrics();
+        if (cache != null) {
+            System.out.printf("hot cache: hit ratio %.1f%%, %,d entries, %,d KB, admitted %,d, rejected %,d, evicted %,d%n",
+                    cache.getHitRatio() * 100, cache.getEntries(), cache.getBytes() >> 10, cache.getAdmitted(),
+                    cache.getRejected(), cache.getEvicted());
+        }
+
+        if (server != null) {
+            server.stop();
+        }
+        if (nioServer != null) {
+            nioServer.stop();
+        }
+        service.shutdown();
+    }
+
+    private static long[] preload(ShortLinkService service, String[] users, int links) {
+        long[] codes = new long[links];
+        List<LinkRequest> batch = new ArrayList<>();
+        int n = 0;
+        for (int i = 0; i < links; i++) {
+            // Links are never exhausted, so the click population stays fixed
+            batch.add(new LinkRequest("https://example.com/" + i, users[i % users.length], Integer.MAX_VALUE));
+            if (batch.size() == 10_000 || i == links - 1) {
+                for (String code : service.createShortLinks(batch)) {
+                    codes[n++] = ShortCode.encode(code);
+                }
+                batch.clear();
+            }
+        }
+        return codes;
+    }
+
+    /** Runs the mix for {@code seconds}; returns the merged histogram of each operation. */
+    private Histogram[] run(int threads, int seconds, long rate) throws InterruptedException {
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        // Each worker takes every threads-th slot of the common schedule
+        long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * threads / rate : 0;
+        Histogram[][] histograms = new Histogram[threads][];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            Histogram[] own = {new Histogram(), new Histogram(), new Histogram()};
+            histograms[t] = own;
+            long first = rate > 0 ? start + TimeUnit.SECONDS.toNanos(1) * t / rate : start;
+            long seed = t * 0x9E3779B97F4A7C15L + System.nanoTime();
+            workers[t] = new Thread(() -> work(own, new SplittableRandom(seed), first, interval, end), "load-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Histogram[] merged = {new Histogram(), new Histogram(), new Histogram()};
+        for (Histogram[] own : histograms) {
+            for (int op = 0; op < OPERATIONS.length; op++) {
+                merged[op].add(own[op]);
+            }
+        }
+        return merged;
+    }
+
+    private void work(Histogram[] histograms, SplittableRandom random, long first, long interval, long end) {
+        int total = Arrays.stream(mix).sum();
+        Socket socket = null;
+        OutputStream out = null;
+        InputStream in = null;
+        try {
+            if (port > 0) {
+                socket = new Socket("localhost", port);
+                socket.setTcpNoDelay(true);
+                out = socket.getOutputStream();
+                in = new BufferedInputStream(socket.getInputStream());
+            }
+            long intended = first;
+            LockSupport.parkNanos(first - System.nanoTime());
+            while (true) {
+                long now = System.nanoTime();
+                if (interval > 0) {
+                    while (now < intended) {
+                        LockSupport.parkNanos(intended - now);
+                        now = System.nanoTime();
+                    }
+                } else {
+                    intended = now;
+                }
+                if (intended >= end) {
+                    break;
+                }
+                int pick = random.nextInt(total);
+                int op = pick < mix[CREATE] ? CREATE : pick < mix[CREATE] + mix[CLICK] ? CLICK : LIST;
+                switch (op) {
+                    case CREATE:
+                        service.createShortLink("https://example.com/new/" + random.nextInt(),
+                                users[random.nextInt(users.length)], Integer.MAX_VALUE);
+                        break;
+                    case CLICK:
+                        int rank = zipf(random);
+                        if (out != null) {
+                            out.write(requests[rank]);
+                            readHeaders(in);
+                        } else if (!service.click(codes[rank]).isOk()) {
+                            throw new IllegalStateException("Click on a preloaded link failed");
+                        }
+                        break;
+                    default:
+                        service.getUserLinks(users[random.nextInt(users.length)], null, PAGE_SIZE);
+                        break;
+                }
+                histograms[op].record(System.nanoTime() - intended);
+                intended += interval;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // Nothing left to read
+                }
+            }
+        }
+    }
+
+    /** Index of a link, rank 0 being the most popular. */
+    private int zipf(SplittableRandom random) {
+        int i = Arrays.binarySearch(zipfCdf, random.nextDouble());
+        return Math.min(i >= 0 ? i : -i - 1, zipfCdf.length - 1);
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static void report(Histogram[] histograms, int seconds) {
+        System.out.printf("%-7s %12s %10s %9s %9s %9s %9s %9s %9s %9s%n", "op", "count", "ops/s",
+                "mean", "p50", "p90", "p99", "p99.9", "p99.99", "max");
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            Histogram h = histograms[op];
+            if (h.count() == 0) {
+                continue;
+            }
+            System.out.printf("%-7s %,12d %,10.0f %9s %9s %9s %9s %9s %9s %9s%n", OPERATIONS[op], h.count(),
+                    h.count() / (double) seconds, micros(h.mean()), micros(h.percentile(50)),
+                    micros(h.percentile(90)), micros(h.percentile(99)), micros(h.percentile(99.9)),
+                    micros(h.percentile(99.99)), micros(h.max()));
+        }
+        System.out.println("latencies in µs");
+    }
+
+    private static String micros(double nanos) {
+        return String.format("%.1f", nanos / 1000);
+    }
+
+    /** Reads one bodiless response up to the blank line that ends its headers. */
+    private static void readHeaders(InputStream in) throws IOException {
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Connection closed");
+            }
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+    }
+
+    /**
+     * Latency histogram in the manner of HdrHistogram: exact below {@value #SUB_BUCKETS}
+     * nanoseconds, then {@value #HALF} buckets per power of two, a relative error under
+     * 0.1%. Values above about 4 minutes land in the last bucket. Not thread-safe: one per
+     * worker, merged afterwards.
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 11;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int HALF = SUB_BUCKETS / 2;
+        private static final int MAX_SHIFT = 27;
+
+        private final long[] counts = new long[SUB_BUCKETS + MAX_SHIFT * HALF];
+        private long count;
+        private long sum;
+        private long max;
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts[index(value)]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+
+        long count() {
+            return count;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        long max() {
+            return max;
+        }
+
+        /** Highest value equivalent to the one at {@code percentile}, capped at the maximum. */
+        long percentile(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestEquivalent(i), max);
+                }
+            }
+            return max;
+        }
+
+        private static int index(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = Math.min(64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS, MAX_SHIFT);
+            long sub = Math.min(value >>> shift, SUB_BUCKETS - 1);
+            return SUB_BUCKETS + (shift - 1) * HALF + (int) (sub - HALF);
+        }
+
+        private static long highestEquivalent(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = (index - SUB_BUCKETS) / HALF + 1;
+            long sub = (index - SUB_BUCKETS) % HALF + HALF;
+            return ((sub + 1) << shift) - 1;
+        }
+    }
+
+    private static final class QuietNotifications extends NotificationService {
+        @Override
+        public void notifyClickLimitReached(String userId, String shortCode) {
+        }
+
+        @Override
+        public void notifyExpiry(String userId, String shortCode) {
+        }
+
+        @Override
+        public void notifyExpiry(List<ShortLink> links) {
+        }
+    }
+}
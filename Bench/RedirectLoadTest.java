@@ -0,0 +1,101 @@
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redirect throughput of {@link RedirectServer} ({@code jdk}) or {@link NioRedirectServer}
+ * ({@code nio}): keep-alive connections, each sending {@code GET /{code}} for known links
+ * and reading the response headers back.
+ * <p>
+ * Usage: {@code java -cp <classes> RedirectLoadTest [connections] [seconds] [jdk|nio]}.
+ */
+public class RedirectLoadTest {
+    private static final int CODES = 4096;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        boolean nio = args.length > 2 && args[2].equals("nio");
+
+        ShortLinkService service = new ShortLinkService();
+        String userId = UUID.randomUUID().toString();
+        byte[][] requests = new byte[CODES][];
+        for (int i = 0; i < CODES; i++) {
+            String code = service.createShortLink("https://example.com/" + i, userId, Integer.MAX_VALUE);
+            requests[i] = ("GET /" + code + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+        RedirectServer server = null;
+        NioRedirectServer nioServer = null;
+        int port;
+        if (nio) {
+            nioServer = new NioRedirectServer(service, 0);
+            nioServer.start();
+            port = nioServer.getPort();
+        } else {
+            server = new RedirectServer(service, 0);
+            server.start();
+            port = server.getPort();
+        }
+
+        run(port, requests, connections, 2);
+        double perSecond = run(port, requests, connections, seconds);
+        System.out.printf("%s %d connections %,12.0f redirects/s%n", nio ? "nio" : "jdk", connections, perSecond);
+
+        if (nio) {
+            nioServer.stop();
+        } else {
+            server.stop();
+        }
+        service.shutdown();
+    }
+
+    private static double run(int port, byte[][] requests, int connections, int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        List<Future<Void>> workers = new ArrayList<>();
+        LongAdder redirects = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int c = 0; c < connections; c++) {
+            int offset = c * 31;
+            workers.add(executor.submit(() -> {
+                try (Socket socket = new Socket("localhost", port)) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    long count = 0;
+                    int i = offset;
+                    while (System.nanoTime() < deadline) {
+                        out.write(requests[i++ & (CODES - 1)]);
+                        readHeaders(in);
+                        count++;
+                    }
+                    redirects.add(count);
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        for (Future<Void> worker : workers) {
+            worker.get();
+        }
+        return redirects.sum() / (double) seconds;
+    }
+
+    /** Reads one bodiless response up to the blank line that ends its headers. */
+    private static void readHeaders(InputStream in) throws Exception {
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IllegalStateException("Connection closed");
+            }
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Time to first redirect after a restart with {@code links} links, from a {@link LinkSnapshot}
+ * taken at the end of the log and from a full {@link WriteAheadLog} replay. Also reports when
+ * the snapshot loader has taken over every record. Links go to {@link OffHeapLinkStorage}.
+ * <p>
+ * Usage: {@code java -Xmx4g -cp <classes> SnapshotStartupBenchmark [links]}.
+ */
+public class SnapshotStartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int links = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Path dir = Files.createTempDirectory("snapshot-bench");
+        Path log = dir.resolve("links.wal");
+        Path snapshot = dir.resolve("links.snapshot");
+        UUID user = UUID.randomUUID();
+        long now = System.currentTimeMillis();
+        long expiry = now + 3_600_000;
+
+        WriteAheadLog wal = WriteAheadLog.open(log, 10);
+        wal.replay(new NoopListener());
+        FeistelShortCodeGenerator generator = new FeistelShortCodeGenerator(wal.generatorKey(), 0);
+        long[] codes = new long[links];
+        for (int i = 0; i < links; i++) {
+            codes[i] = generator.next();
+            wal.logCreate(codes[i], "https://example.com/" + codes[i], user.toString(), 100, now, expiry, () -> {
+            });
+        }
+        long key = wal.generatorKey();
+        long end = wal.position();
+        wal.close();
+
+        long[] sorted = codes.clone();
+        Arrays.sort(sorted);
+        long start = System.nanoTime();
+        LinkSnapshot.write(snapshot, key, end, sorted,
+                code -> new ShortLink(code, "https://example.com/" + code, user, 100, 0, now, expiry));
+        System.out.printf("%,d links: snapshot write %,d ms, %,d MB; log %,d MB%n", links,
+                (System.nanoTime() - start) / 1_000_000, Files.size(snapshot) >> 20, Files.size(log) >> 20);
+        long probe = codes[links / 2];
+
+        System.gc();
+        start = System.nanoTime();
+        ShortLinkService fromSnapshot = new ShortLinkService(WriteAheadLog.open(log, 10), snapshot,
+                new OffHeapLinkStorage());
+        ClickResult first = fromSnapshot.click(probe);
+        long firstRedirect = System.nanoTime() - start;
+        // Creation waits for the snapshot loader
+        fromSnapshot.createShortLink("https://example.com/new", user.toString(), 1);
+        long loaded = System.nanoTime() - start;
+        System.out.printf("snapshot:   first redirect %,6d ms (%s), fully loaded %,d ms%n",
+                firstRedirect / 1_000_000, first.getStatus(), loaded / 1_000_000);
+        fromSnapshot.shutdown();
+        fromSnapshot = null;
+
+        System.gc();
+        start = System.nanoTime();
+        ShortLinkService fromLog = new ShortLinkService(WriteAheadLog.open(log, 10), new OffHeapLinkStorage());
+        first = fromLog.click(probe);
+        System.out.printf("log replay: first redirect %,6d ms (%s)%n",
+                (System.nanoTime() - start) / 1_000_000, first.getStatus());
+        fromLog.shutdown();
+
+        Files.delete(log);
+        Files.delete(snapshot);
+        Files.delete(dir);
+    }
+
+    private static final class NoopListener implements WriteAheadLog.Listener {
+        @Override
+        public void created(long code, String longUrl, String userId, int clickLimit,
+                            long creationMillis, long expiryMillis) {
+        }
+
+        @Override
+        public void clicked(long code, int clickCount) {
+        }
+
+        @Override
+        public void deleted(long code) {
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncNotificationServiceTest {
+
+    private final String userId = UUID.randomUUID().toString();
+    private final String otherUserId = UUID.randomUUID().toString();
+
+    /** Records every delivery; sinks are never called concurrently. */
+    static class RecordingSink implements AsyncNotificationService.Sink {
+        final List<String> deliveries = Collections.synchronizedList(new ArrayList<>());
+        final List<String> limitReached = Collections.synchronizedList(new ArrayList<>());
+        final List<String> expired = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void deliver(String userId, List<String> limitReachedCodes, List<String> expiredCodes) {
+            deliveries.add(userId + " " + limitReachedCodes + " " + expiredCodes);
+            limitReached.addAll(limitReachedCodes);
+            expired.addAll(expiredCodes);
+        }
+    }
+
+    @Test
+    @DisplayName("Should deliver the events of one batch grouped per user, in publication order")
+    void testCoalescing() {
+        RecordingSink sink = new RecordingSink();
+        AsyncNotificationService notifications = new AsyncNotificationService(sink, 16,
+                AsyncNotificationService.Overflow.BLOCK, 10_000);
+        notifications.notifyExpiry(userId, "aaaaaaa1");
+        notifications.notifyExpiry(userId, "aaaaaaa2");
+        notifications.notifyClickLimitReached(otherUserId, "bbbbbbb1");
+        notifications.notifyClickLimitReached(userId, "aaaaaaa3");
+        notifications.notifyExpiry(userId, "aaaaaaa4");
+        notifications.close();
+
+        assertEquals(List.of(
+                userId + " [aaaaaaa3] [aaaaaaa1, aaaaaaa2, aaaaaaa4]",
+                otherUserId + " [bbbbbbb1] []"), sink.deliveries);
+        AsyncNotificationService.Metrics metrics = notifications.metrics();
+        assertEquals(5, metrics.getPublished());
+        assertEquals(5, metrics.getDelivered());
+        assertEquals(1, metrics.getBatches());
+        assertEquals(0, metrics.getPending());
+    }
+
+    @Test
+    @DisplayName("Should drop and count events while the ring is full under the drop policy")
+    void testDropPolicy() throws Exception {
+        CountDownLatch inSink = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink recording = new RecordingSink();
+        AsyncNotificationService notifications = new AsyncNotificationService((user, limits, expiries) -> {
+            inSink.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            recording.deliver(user, limits, expiries);
+        }, 4, AsyncNotificationService.Overflow.DROP, 0);
+
+        notifications.notifyExpiry(userId, "first");
+        assertTrue(inSink.await(5, TimeUnit.SECONDS));
+        // The consumer is stuck in the sink: four events fill the ring, three more are dropped
+        for (int i = 0; i < 7; i++) {
+            notifications.notifyExpiry(userId, "code" + i);
+        }
+        assertEquals(3, notifications.metrics().getDropped());
+        release.countDown();
+        notifications.close();
+
+        assertEquals(List.of("first", "code0", "code1", "code2", "code3"), recording.expired);
+        assertEquals(5, notifications.metrics().getDelivered());
+    }
+
+    @Test
+    @DisplayName("Should lose no event under the block policy with concurrent producers")
+    void testBlockPolicy() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        AsyncNotificationService notifications = new AsyncNotificationService(sink, 8,
+                AsyncNotificationService.Overflow.BLOCK, 1);
+        int producers = 4;
+        int events = 5_000;
+        Thread[] threads = new Thread[producers];
+        for (int t = 0; t < producers; t++) {
+            String user = "user" + t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < events; i++) {
+                    notifications.notifyClickLimitReached(user, user + ":" + i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        notifications.close();
+
+        assertEquals(producers * events, sink.limitReached.size());
+        assertEquals(0, notifications.metrics().getDropped());
+        assertEquals(producers * events, notifications.metrics().getDelivered());
+        for (int t = 0; t < producers; t++) {
+            String prefix = "user" + t + ":";
+            int next = 0;
+            for (String code : sink.limitReached) {
+                if (code.startsWith(prefix)) {
+                    assertEquals(prefix + next++, code);
+                }
+            }
+            assertEquals(events, next);
+        }
+    }
+
+    @Test
+    @DisplayName("Should lose no event and never hang when producers race with close")
+    void testPublishDuringClose() throws Exception {
+        for (AsyncNotificationService.Overflow overflow : AsyncNotificationService.Overflow.values()) {
+            RecordingSink sink = new RecordingSink();
+            AsyncNotificationService notifications = new AsyncNotificationService(sink, 4, overflow, 1);
+            int producers = 4;
+            int events = 20_000;
+            CountDownLatch started = new CountDownLatch(producers);
+            Thread[] threads = new Thread[producers];
+            for (int t = 0; t < producers; t++) {
+                String user = "user" + t;
+                threads[t] = new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < events; i++) {
+                        notifications.notifyExpiry(user, user + ":" + i);
+                    }
+                });
+                threads[t].start();
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            notifications.close();
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+                assertFalse(thread.isAlive(), overflow + ": producer stuck after close");
+            }
+
+            long dropped = notifications.metrics().getDropped();
+            assertEquals(producers * events, sink.expired.size() + dropped, overflow.toString());
+            if (overflow == AsyncNotificationService.Overflow.BLOCK) {
+                assertEquals(0, dropped);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should deliver a click-limit notification from the service by shutdown")
+    void testServiceIntegration() {
+        RecordingSink sink = new RecordingSink();
+        AsyncNotificationService notifications = new AsyncNotificationService(sink, 16,
+                AsyncNotificationService.Overflow.BLOCK, 10_000);
+        ShortLinkService service = new ShortLinkService(new FeistelShortCodeGenerator(), new HeapLinkStorage(),
+                notifications);
+        String shortCode = service.createShortLink("https://example.com", userId, 1);
+        assertTrue(service.click(shortCode).isOk());
+        assertEquals(1, service.getNotificationMetrics().getPending());
+        service.shutdown();
+
+        assertEquals(List.of(userId + " [" + shortCode + "] []"), sink.deliveries);
+    }
+}
@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.*;
+
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests in the spirit of jcstress: many rounds of a small contended scenario,
+ * checking the invariants of every single round.
+ */
+class ClickAccountingStressTest {
+
+    private static final int ROUNDS = 200;
+    private static final int THREADS = 8;
+    private static final int CLICK_LIMIT = 50;
+
+    private final String userId = UUID.randomUUID().toString();
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    static class CountingNotificationService extends NotificationService {
+        final AtomicInteger limitReached = new AtomicInteger();
+
+        @Override
+        public void notifyClickLimitReached(String userId, String shortCode) {
+            limitReached.incrementAndGet();
+        }
+    }
+
+    @Test
+    @DisplayName("Should accept exactly clickLimit clicks and notify once (heap)")
+    void testExactClicksHeap() throws Exception {
+        runExactClicks(HeapLinkStorage::new);
+    }
+
+    @Test
+    @DisplayName("Should accept exactly clickLimit clicks and notify once (off-heap)")
+    void testExactClicksOffHeap() throws Exception {
+        runExactClicks(OffHeapLinkStorage::new);
+    }
+
+    @Test
+    @DisplayName("Should give a link exactly one owner when clicks race with a claim")
+    void testClaimRace() throws Exception {
+        for (LinkStorage storage : new LinkStorage[]{new HeapLinkStorage(), new OffHeapLinkStorage()}) {
+            for (int round = 0; round < ROUNDS; round++) {
+                long code = round;
+                int slot = storage.allocate(code, "https://example.com", userId, CLICK_LIMIT, 0, 0);
+                AtomicInteger clicks = new AtomicInteger();
+                AtomicInteger owners = new AtomicInteger();
+                CyclicBarrier start = new CyclicBarrier(THREADS);
+                Future<?>[] futures = new Future<?>[THREADS];
+                for (int t = 0; t < THREADS; t++) {
+                    boolean claimer = t == 0;
+                    futures[t] = executor.submit(() -> {
+                        start.await();
+                        if (claimer) {
+                            Thread.yield();
+                            if (storage.tryClaim(slot, code)) {
+                                owners.incrementAndGet();
+                            }
+                            return null;
+                        }
+                        for (int i = 0; i < CLICK_LIMIT; i++) {
+                            int result = storage.tryClick(slot, code);
+                            if (result > 0) {
+                                clicks.incrementAndGet();
+                                if (result == CLICK_LIMIT) {
+                                    owners.incrementAndGet();
+                                }
+                            }
+                        }
+                        return null;
+                    });
+                }
+                for (Future<?> future : futures) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+
+                assertEquals(1, owners.get(), "round " + round);
+                assertTrue(clicks.get() <= CLICK_LIMIT, "round " + round);
+                storage.release(slot);
+            }
+        }
+    }
+
+    private void runExactClicks(Supplier<LinkStorage> storageFactory) throws Exception {
+        CountingNotificationService notifications = new CountingNotificationService();
+        ShortLinkService service = new ShortLinkService(new FeistelShortCodeGenerator(), storageFactory.get(), notifications);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                String shortCode = service.createShortLink("https://example.com", userId, CLICK_LIMIT);
+                AtomicInteger successes = new AtomicInteger();
+                CyclicBarrier start = new CyclicBarrier(THREADS);
+                Future<?>[] futures = new Future<?>[THREADS];
+                for (int t = 0; t < THREADS; t++) {
+                    futures[t] = executor.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < CLICK_LIMIT / 2; i++) {
+                            try {
+                                service.clickShortLink(shortCode, userId);
+                                successes.incrementAndGet();
+                            } catch (Exception e) {
+                                // Exhausted or already deleted
+                            }
+                        }
+                        return null;
+                    });
+                }
+                for (Future<?> future : futures) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+
+                assertEquals(CLICK_LIMIT, successes.get(), "round " + round);
+                assertEquals(round + 1, notifications.limitReached.get(), "round " + round);
+                assertEquals(0, service.getTotalLinksCount(), "round " + round);
+            }
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClickCoalescerTest {
+
+    private Path log;
+    private final String userId = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        log = Files.createTempFile("links", ".wal");
+        Files.delete(log);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(log);
+    }
+
+    @Test
+    @DisplayName("Should log one record per dirty link and flush, and recover the full count")
+    void testCoalescing() throws Exception {
+        ShortLinkService service = new ShortLinkService(WriteAheadLog.open(log, 5, 3_600_000, 1_000),
+                new HeapLinkStorage());
+        String shortCode = service.createShortLink("https://example.com", userId, 1_000);
+        for (int i = 0; i < 500; i++) {
+            service.clickShortLink(shortCode, userId);
+        }
+        assertEquals(1, service.getClickFlushMetrics().getDirtyLinks());
+        assertEquals(0, service.getClickFlushMetrics().getFlushedRecords());
+        service.shutdown();
+
+        ShortLinkService restarted = new ShortLinkService(WriteAheadLog.open(log, 5), new HeapLinkStorage());
+        assertEquals(500, restarted.getUserLinks(userId).get(0).getClickCount());
+        restarted.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should flush early once the dirty-link threshold is reached")
+    void testThreshold() throws Exception {
+        ShortLinkService service = new ShortLinkService(WriteAheadLog.open(log, 5, 3_600_000, 3),
+                new HeapLinkStorage());
+        for (int i = 0; i < 3; i++) {
+            String shortCode = service.createShortLink("https://example.com/" + i, userId, 10);
+            service.clickShortLink(shortCode, userId);
+            // The click that crosses the threshold comes last, so no click can re-mark a flushed link
+            if (i < 2) {
+                service.clickShortLink(shortCode, userId);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (service.getClickFlushMetrics().getFlushes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        ClickCoalescer.Metrics metrics = service.getClickFlushMetrics();
+        assertEquals(1, metrics.getFlushes());
+        assertEquals(3, metrics.getLastBatchSize());
+        assertEquals(0, metrics.getDirtyLinks());
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should skip links deleted before the flush")
+    void testDeletedLink() throws Exception {
+        ShortLinkService service = new ShortLinkService(WriteAheadLog.open(log, 5, 3_600_000, 1_000),
+                new HeapLinkStorage());
+        String shortCode = service.createShortLink("https://example.com", userId, 2);
+        service.clickShortLink(shortCode, userId);
+        service.clickShortLink(shortCode, userId);
+        service.shutdown();
+
+        ShortLinkService restarted = new ShortLinkService(WriteAheadLog.open(log, 5), new HeapLinkStorage());
+        assertSame(ClickResult.NOT_FOUND, restarted.click(shortCode));
+        assertEquals(0, restarted.getTotalLinksCount());
+        restarted.shutdown();
+    }
+}
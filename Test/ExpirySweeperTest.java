@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpirySweeperTest {
+
+    // Far beyond the wall clock, so that the background cycles never find anything expired
+    private static final long NOW = Long.MAX_VALUE / 2;
+
+    private final String userId = UUID.randomUUID().toString();
+    private final HeapLinkStorage storage = new HeapLinkStorage();
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private ExpirySweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new ExpirySweeper(storage, (codes, count) -> {
+            int reclaimed = 0;
+            for (int i = 0; i < count; i++) {
+                Integer slot = slots.remove(codes[i]);
+                if (slot != null) {
+                    storage.release(slot);
+                    reclaimed++;
+                }
+            }
+            return reclaimed;
+        }, 1_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sweeper.close();
+    }
+
+    private void add(long code, long expiryMillis) {
+        slots.put(code, storage.allocate(code, "https://example.com/" + code, userId, 5, 0, expiryMillis));
+    }
+
+    @Test
+    @DisplayName("Should keep sweeping slices while most links in them are expired")
+    void testReclaimsBurst() {
+        int links = 5 * ExpirySweeper.SLICE_SLOTS;
+        for (int i = 1; i <= links; i++) {
+            add(i, i % 5 == 0 ? NOW + 1_000 : NOW - 1);
+        }
+
+        sweeper.sweep(NOW);
+
+        ExpirySweeper.Metrics metrics = sweeper.metrics();
+        assertEquals(links, metrics.getScannedSlots());
+        assertEquals(links / 5 * 4, metrics.getReclaimedLinks());
+        assertEquals(links / 5, slots.size());
+        for (long code : slots.keySet()) {
+            assertEquals(0, code % 5);
+        }
+    }
+
+    @Test
+    @DisplayName("Should stop after one slice when few links are expired")
+    void testMostlyLive() {
+        int links = 4 * ExpirySweeper.SLICE_SLOTS;
+        for (int i = 1; i <= links; i++) {
+            add(i, i % 10 == 0 ? NOW - 1 : NOW + 1_000);
+        }
+
+        sweeper.sweep(NOW);
+        ExpirySweeper.Metrics metrics = sweeper.metrics();
+        assertEquals(ExpirySweeper.SLICE_SLOTS, metrics.getScannedSlots());
+        assertTrue(metrics.getMaxSliceMicros() <= metrics.getMaxCycleMicros());
+
+        // The cursor moves on, so later cycles cover the rest of the store
+        for (int i = 1; i < 4; i++) {
+            sweeper.sweep(NOW);
+        }
+        assertEquals(links / 10, sweeper.metrics().getReclaimedLinks());
+        assertEquals(links - links / 10, slots.size());
+    }
+
+    @Test
+    @DisplayName("Should skip free slots and wrap around")
+    void testFreeSlotsAndWrap() {
+        add(1, NOW - 1);
+        add(2, NOW + 1_000);
+        storage.release(slots.remove(2L));
+
+        sweeper.sweep(NOW);
+        sweeper.sweep(NOW);
+        ExpirySweeper.Metrics metrics = sweeper.metrics();
+        assertEquals(1, metrics.getReclaimedLinks());
+        assertEquals(4, metrics.getScannedSlots());
+        assertTrue(slots.isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiryWheelTest {
+
+    private static final long TICK = 1000;
+
+    private final Map<Long, Long> deadlines = new HashMap<>();
+    private final List<long[]> batches = new ArrayList<>();
+    private ExpiryWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new ExpiryWheel(TICK, 0,
+                code -> deadlines.getOrDefault(code, ExpiryWheel.GONE),
+                (entries, count) -> batches.add(Arrays.copyOf(entries, count)));
+    }
+
+    private void add(long code, long deadlineMillis) {
+        deadlines.put(code, deadlineMillis);
+        wheel.add(code, deadlineMillis);
+    }
+
+    @Test
+    @DisplayName("Should fire entry on the tick of its deadline")
+    void testFiresOnDeadline() {
+        add(1, 5 * TICK);
+
+        wheel.advance(4 * TICK);
+        assertTrue(batches.isEmpty());
+        assertEquals(1, wheel.size());
+
+        wheel.advance(5 * TICK);
+        assertEquals(1, batches.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("Should deliver entries of the same tick as one batch")
+    void testBatchPerTick() {
+        for (int i = 0; i < 100; i++) {
+            add(i, 10 * TICK - i);
+        }
+
+        wheel.advance(10 * TICK);
+
+        assertEquals(1, batches.size());
+        assertEquals(100, batches.get(0).length);
+    }
+
+    @Test
+    @DisplayName("Should cascade far deadlines down through the levels")
+    void testCascade() {
+        add(12, 12 * 3600 * TICK);
+        add(30, 30L * 24 * 3600 * TICK);
+
+        wheel.advance(12 * 3600 * TICK - 1);
+        assertTrue(batches.isEmpty());
+
+        wheel.advance(12 * 3600 * TICK);
+        assertArrayEquals(new long[]{12}, batches.get(0));
+
+        wheel.advance(30L * 24 * 3600 * TICK);
+        assertEquals(2, batches.size());
+        assertArrayEquals(new long[]{30}, batches.get(1));
+    }
+
+    @Test
+    @DisplayName("Should keep TTLs from minutes to months in order")
+    void testMixedTtls() {
+        long minute = 60 * TICK;
+        long day = 24 * 60 * minute;
+        add(1, 5 * minute);
+        add(2, 90 * day);
+        add(3, 250 * day);
+        add(4, 90 * day + 1);
+
+        wheel.advance(90 * day - 1);
+        assertEquals(1, batches.size());
+        assertArrayEquals(new long[]{1}, batches.get(0));
+
+        wheel.advance(90 * day + TICK);
+        assertEquals(3, batches.size());
+        assertArrayEquals(new long[]{2}, batches.get(1));
+        assertArrayEquals(new long[]{4}, batches.get(2));
+        assertEquals(1, wheel.size());
+
+        // Beyond the wheel horizon: parked and placed again on cascade
+        wheel.advance(250 * day);
+        assertEquals(4, batches.size());
+        assertArrayEquals(new long[]{3}, batches.get(3));
+    }
+
+    @Test
+    @DisplayName("Should fire past deadlines on the next tick")
+    void testPastDeadline() {
+        wheel.advance(3 * TICK);
+        add(1, TICK);
+
+        wheel.advance(4 * TICK);
+
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    @DisplayName("Should drop cancelled entries when their bucket cascades")
+    void testLazyCancellation() {
+        add(7, 2 * 3600 * TICK);
+        deadlines.remove(7L);
+
+        wheel.advance(2 * 3600 * TICK);
+
+        assertTrue(batches.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+}
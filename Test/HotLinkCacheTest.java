@@ -0,0 +1,155 @@
+import org.junit.jupiter.api.*;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotLinkCacheTest {
+
+    private static final String URL = "https://example.com/";
+    private static final long ENTRY_BYTES = HotLinkCache.ENTRY_OVERHEAD + URL.length();
+
+    private final String userId = UUID.randomUUID().toString();
+
+    @Test
+    @DisplayName("Should keep frequently used links through a scan of cold ones")
+    void testScanResistance() {
+        HotLinkCache cache = new HotLinkCache(ENTRY_BYTES * 1000);
+        for (int round = 0; round < 20; round++) {
+            for (long code = 1; code <= 100; code++) {
+                if (cache.get(code) == null) {
+                    cache.put(code, (int) code, URL, 10, Long.MAX_VALUE);
+                }
+            }
+        }
+        // A scan over ten times the capacity, each link read twice to get past the doorkeeper,
+        // while the hot links keep being read
+        int hotMisses = 0;
+        for (long code = 1_000; code < 11_000; code++) {
+            for (int read = 0; read < 2; read++) {
+                if (cache.get(code) == null) {
+                    cache.put(code, (int) code, URL, 10, Long.MAX_VALUE);
+                }
+            }
+            if (code % 100 == 0) {
+                for (long hot = 1; hot <= 100; hot++) {
+                    if (cache.get(hot) == null) {
+                        hotMisses++;
+                        cache.put(hot, (int) hot, URL, 10, Long.MAX_VALUE);
+                    }
+                }
+            }
+        }
+
+        assertEquals(0, hotMisses);
+        for (long code = 1; code <= 100; code++) {
+            assertNotNull(cache.get(code), "hot link " + code + " was evicted");
+        }
+        HotLinkCache.Metrics metrics = cache.metrics();
+        assertTrue(metrics.getRejected() > 5_000);
+        assertTrue(metrics.getBytes() <= metrics.getMaxBytes());
+    }
+
+    @Test
+    @DisplayName("Should cache a link only from its second miss on")
+    void testDoorkeeper() {
+        HotLinkCache cache = new HotLinkCache(ENTRY_BYTES * 100);
+        cache.put(42, 7, URL, 3, 1_000);
+        assertNull(cache.get(42));
+        cache.put(42, 7, URL, 3, 1_000);
+        assertNotNull(cache.get(42));
+    }
+
+    @Test
+    @DisplayName("Should stay within its byte budget and weigh entries by URL length")
+    void testByteBound() {
+        HotLinkCache cache = new HotLinkCache(ENTRY_BYTES * 200);
+        String longUrl = URL + "x".repeat(1_000);
+        for (long code = 1; code <= 5_000; code++) {
+            cache.put(code, (int) code, code % 2 == 0 ? longUrl : URL, 10, Long.MAX_VALUE);
+            cache.put(code, (int) code, code % 2 == 0 ? longUrl : URL, 10, Long.MAX_VALUE);
+            assertTrue(cache.metrics().getBytes() <= cache.metrics().getMaxBytes());
+        }
+        assertTrue(cache.metrics().getEntries() < 200);
+    }
+
+    @Test
+    @DisplayName("Should drop invalidated entries")
+    void testInvalidate() {
+        HotLinkCache cache = new HotLinkCache(ENTRY_BYTES * 100);
+        cache.put(42, 7, URL, 3, 1_000);
+        cache.put(42, 7, URL, 3, 1_000);
+        HotLinkCache.Entry entry = cache.get(42);
+        assertEquals(7, entry.slot);
+        assertEquals(URL, entry.longUrl);
+        assertEquals(3, entry.clickLimit);
+
+        cache.invalidate(42);
+        assertNull(cache.get(42));
+        assertEquals(1, cache.metrics().getInvalidated());
+        assertEquals(0, cache.metrics().getBytes());
+    }
+
+    @Test
+    @DisplayName("Should find entries across tombstone sweeps and look up without allocating")
+    void testTableChurn() {
+        HotLinkCache cache = new HotLinkCache(ENTRY_BYTES * 100);
+        for (long code = 1; code <= 50_000; code++) {
+            cache.put(code, (int) code, URL, 10, Long.MAX_VALUE);
+            cache.put(code, (int) code, URL, 10, Long.MAX_VALUE);
+            if (code % 2 == 0) {
+                cache.invalidate(code);
+            }
+        }
+        HotLinkCache.Metrics metrics = cache.metrics();
+        assertTrue(metrics.getEntries() > 0 && metrics.getEntries() < 100);
+        int found = 0;
+        for (long code = 1; code <= 50_000; code++) {
+            HotLinkCache.Entry entry = cache.get(code);
+            if (entry != null) {
+                assertEquals(code, entry.code);
+                assertEquals(1, code % 2);
+                found++;
+            }
+        }
+        assertEquals(metrics.getEntries(), found);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int round = 0; round < 20; round++) {
+            for (long code = 1_000_000; code < 1_010_000; code++) {
+                assertNull(cache.get(code));
+            }
+        }
+        // A boxed key per lookup would take 3.2 MB here
+        assertTrue(threads.getCurrentThreadAllocatedBytes() - before < 100_000);
+    }
+
+    @Test
+    @DisplayName("Should serve cached redirects and keep click limits exact")
+    void testServiceClickLimit() {
+        for (LinkStorage storage : new LinkStorage[]{new HeapLinkStorage(), new OffHeapLinkStorage()}) {
+            ShortLinkService service = new ShortLinkService(new FeistelShortCodeGenerator(), storage,
+                    new NotificationService(), null, null, 0, ENTRY_BYTES * 1000);
+            // Two misses let the link into the cache, the two last clicks are hits
+            String shortCode = service.createShortLink(URL, userId, 4);
+            for (int i = 0; i < 4; i++) {
+                ClickResult result = service.click(shortCode);
+                assertTrue(result.isOk());
+                assertEquals(URL, result.getLongUrl());
+            }
+            assertSame(ClickResult.NOT_FOUND, service.click(shortCode));
+
+            // A new link in the released slot is not mistaken for the deleted one
+            String other = service.createShortLink(URL + "other", userId, 5);
+            assertEquals(URL + "other", service.click(other).getLongUrl());
+            assertSame(ClickResult.NOT_FOUND, service.click(shortCode));
+
+            HotLinkCache.Metrics metrics = service.getHotCacheMetrics();
+            assertEquals(2, metrics.getHits());
+            assertEquals(1, metrics.getInvalidated());
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkExporterTest {
+
+    private final String userId = UUID.randomUUID().toString();
+    private final String otherUserId = UUID.randomUUID().toString();
+    private ShortLinkService service;
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new ShortLinkService();
+        dir = Files.createTempDirectory("export");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        service.shutdown();
+        try (var files = Files.list(dir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    @DisplayName("Should export JSONL rows with escaped URLs and read them back with the importer")
+    void testJsonlRoundTrip() throws Exception {
+        String url = "https://example.com/путь?q=\"a\\b\"&t=\t😀";
+        String code = service.createShortLink(url, userId, 5);
+        service.clickShortLink(code, userId);
+        service.createShortLink("https://example.com/other", otherUserId, 3);
+        Path file = dir.resolve("links.jsonl");
+
+        LinkExporter.Result result = LinkExporter.exportFile(service, file);
+
+        assertEquals(2, result.getRows());
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        String row = lines.stream().filter(line -> line.contains(code)).findFirst().orElseThrow();
+        assertTrue(row.startsWith("{\"code\":\"" + code + "\",\"url\":\"https://example.com/путь?q=\\\"a\\\\b\\\"&t=\\u0009😀\""));
+        assertTrue(row.contains("\"owner\":\"" + userId + "\",\"limit\":5,\"clicks\":1,"));
+
+        ShortLinkService copy = new ShortLinkService();
+        LinkImporter.Result imported = LinkImporter.importFile(copy, file);
+        assertEquals(2, imported.getImported());
+        assertEquals(url, copy.getUserLinks(userId).get(0).getLongUrl());
+        copy.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should export gzip-compressed CSV filtered by user and expiry window")
+    void testGzipCsvWithFilters() throws Exception {
+        service.createShortLink("https://example.com/a,b", userId, 5, Duration.ofHours(1));
+        service.createShortLink("https://example.com/late", userId, 5, Duration.ofDays(30));
+        service.createShortLink("https://example.com/other", otherUserId, 5, Duration.ofHours(1));
+        Path file = dir.resolve("links.csv.gz");
+        long now = System.currentTimeMillis();
+
+        LinkExporter.Result result = new LinkExporter(service).export(file, LinkExporter.Format.CSV, true,
+                userId, now, now + Duration.ofDays(1).toMillis());
+
+        assertEquals(1, result.getRows());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            assertEquals("code,url,owner,limit,clicks,created,expires", reader.readLine());
+            String row = reader.readLine();
+            assertTrue(row.contains(",\"https://example.com/a,b\"," + userId + ",5,0,"));
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    @DisplayName("Should stream many links through the reusable buffer")
+    void testManyLinks() throws Exception {
+        List<LinkRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            requests.add(new LinkRequest("https://example.com/" + i, i % 2 == 0 ? userId : otherUserId, 5));
+        }
+        service.createShortLinks(requests);
+        Path file = dir.resolve("links.jsonl.gz");
+
+        LinkExporter.Result result = LinkExporter.exportFile(service, file);
+
+        assertEquals(20_000, result.getRows());
+        assertTrue(result.getBytes() > LinkExporter.BUFFER_SIZE);
+        assertTrue(result.getFileBytes() < result.getBytes());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            assertEquals(20_000, reader.lines().count());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkImporterTest {
+
+    private final String userId = UUID.randomUUID().toString();
+    private final String otherUserId = UUID.randomUUID().toString();
+    private ShortLinkService service;
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        service = new ShortLinkService();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        service.shutdown();
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private Path write(String suffix, String content) throws Exception {
+        file = Files.createTempFile("links", suffix);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    @DisplayName("Should import CSV rows and reject malformed ones")
+    void testCsv() throws Exception {
+        Path csv = write(".csv", "url,owner,limit,ttl\r\n"
+                + "https://example.com/a," + userId + ",5,30m\r\n"
+                + "\"https://example.com/b?x=1,2&q=\"\"\"\"\"," + userId + ",3\r\n"
+                + "\r\n"
+                + "https://example.com/c, " + otherUserId + " ,1,7d\n"
+                + "https://example.com/d,not-a-uuid,5,1h\n"
+                + "https://example.com/e," + userId + ",0,1h\n"
+                + "https://example.com/f," + userId + ",5,400d\n"
+                + "https://example.com/g," + userId + "\n"
+                + "https://example.com/h," + userId + ",5,2w");
+
+        LinkImporter.Result result = LinkImporter.importFile(service, csv);
+
+        assertEquals(3, result.getImported());
+        assertEquals(5, result.getRejected());
+        assertEquals(5, result.getRejectionSamples().size());
+        List<ShortLink> links = service.getUserLinks(userId);
+        assertEquals(2, links.size());
+        ShortLink first = links.get(0).getLongUrl().endsWith("/a") ? links.get(0) : links.get(1);
+        ShortLink quoted = first == links.get(0) ? links.get(1) : links.get(0);
+        assertEquals("https://example.com/b?x=1,2&q=\"\"", quoted.getLongUrl());
+        assertEquals(3, quoted.getClickLimit());
+        assertTrue(first.getExpiryMillis() - first.getCreationMillis() <= Duration.ofMinutes(30).toMillis());
+        assertEquals(1, service.getUserLinksCount(otherUserId));
+    }
+
+    @Test
+    @DisplayName("Should import JSONL rows with escapes and unknown fields")
+    void testJsonl() throws Exception {
+        Path jsonl = write(".jsonl",
+                "{\"url\": \"https:\\/\\/example.com\\/\\u043f\", \"owner\": \"" + userId + "\", \"limit\": 2, "
+                        + "\"tags\": {\"a\": [1, \"}\"]}, \"ttl\": \"12h\"}\n"
+                        + "{\"clickLimit\": \"4\", \"userId\": \"" + userId + "\", \"url\": \"https://example.com/2\"}\n"
+                        + "{\"url\": \"https://example.com/3\", \"owner\": \"" + userId + "\"}\n"
+                        + "{\"url\": \"https://example.com/4\", \"owner\": \"" + userId + "\", \"limit\": 1\n"
+                        + "{\"url\": \"https://example.com/\\r\\nSet-Cookie: a=b\", \"owner\": \"" + userId + "\", \"limit\": 1}\n");
+
+        LinkImporter.Result result = LinkImporter.importFile(service, jsonl);
+
+        assertEquals(2, result.getImported());
+        assertEquals(3, result.getRejected());
+        List<ShortLink> links = service.getUserLinks(userId);
+        assertEquals(2, links.size());
+        assertTrue(links.stream().anyMatch(link -> link.getLongUrl().equals("https://example.com/п")
+                && link.getClickLimit() == 2));
+        assertTrue(links.stream().anyMatch(link -> link.getLongUrl().equals("https://example.com/2")
+                && link.getClickLimit() == 4));
+    }
+
+    @Test
+    @DisplayName("Should split into chunks on line boundaries and parse them in parallel")
+    void testChunks() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        int rows = 25_000;
+        for (int i = 0; i < rows; i++) {
+            csv.append("https://example.com/").append(i).append(',')
+                    .append(i % 2 == 0 ? userId : otherUserId).append(",5,").append(1 + i % 48).append('\n');
+        }
+        Path path = write(".csv", csv.toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        LinkImporter.Result result = new LinkImporter(service, pool, 4096).run(path, LinkImporter.Format.CSV);
+        pool.shutdown();
+
+        assertEquals(rows, result.getImported());
+        assertEquals(0, result.getRejected());
+        assertEquals(rows, service.getTotalLinksCount());
+        assertEquals(rows / 2, service.getUserLinksCount(userId));
+        assertTrue(result.getLinksPerSecond() > 0);
+    }
+}
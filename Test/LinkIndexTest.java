@@ -0,0 +1,216 @@
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkIndexTest {
+
+    @Test
+    @DisplayName("Should put, get and remove entries")
+    void testBasicOperations() {
+        LinkIndex index = new LinkIndex();
+
+        assertEquals(LinkIndex.NOT_FOUND, index.put(42, 7));
+        assertEquals(7, index.get(42));
+        assertEquals(7, index.put(42, 8));
+        assertEquals(1, index.size());
+
+        assertEquals(8, index.remove(42));
+        assertEquals(LinkIndex.NOT_FOUND, index.get(42));
+        assertEquals(LinkIndex.NOT_FOUND, index.remove(42));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    @DisplayName("Should insert a batch across all segments")
+    void testPutAll() {
+        LinkIndex index = new LinkIndex();
+        index.put(5, 99);
+        int count = 20_000;
+        long[] codes = new long[count];
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            codes[i] = i * 7919L;
+            slots[i] = i;
+        }
+
+        index.putAll(codes, slots, count);
+
+        assertEquals(count + 1, index.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, index.get(codes[i]));
+        }
+        assertEquals(99, index.get(5));
+    }
+
+    @Test
+    @DisplayName("Should accept code zero")
+    void testZeroCode() {
+        LinkIndex index = new LinkIndex();
+
+        index.put(0, 3);
+
+        assertEquals(3, index.get(0));
+    }
+
+    @Test
+    @DisplayName("Should keep entries across rehashes and tombstones")
+    void testGrowth() {
+        LinkIndex index = new LinkIndex(4, 0);
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            long code = (i * 7_919L) % ShortCode.SPACE;
+            index.put(code, i);
+            expected.put(code, i);
+            if (i % 3 == 0) {
+                index.remove(code);
+                expected.remove(code);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        expected.forEach((code, slot) -> assertEquals(slot, index.get(code)));
+        int[] visited = {0};
+        index.forEach((code, slot) -> {
+            assertEquals(expected.get(code), slot);
+            visited[0]++;
+        });
+        assertEquals(expected.size(), visited[0]);
+    }
+
+    @Test
+    @DisplayName("Should serve lock-free reads during concurrent writes")
+    void testConcurrentReadsAndWrites() throws Exception {
+        LinkIndex index = new LinkIndex();
+        int stable = 10_000;
+        for (int i = 0; i < stable; i++) {
+            index.put(i, i);
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        for (int w = 0; w < 2; w++) {
+            long base = 1_000_000L * (w + 1);
+            executor.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    index.put(base + i, i);
+                    if (i % 2 == 0) {
+                        index.remove(base + i);
+                    }
+                }
+            });
+        }
+        for (int r = 0; r < 2; r++) {
+            executor.submit(() -> {
+                for (int round = 0; round < 50; round++) {
+                    for (int i = 0; i < stable; i++) {
+                        if (index.get(i) != i) {
+                            failed.set(true);
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertFalse(failed.get());
+        assertEquals(stable + 200_000, index.size());
+    }
+
+    @Test
+    @DisplayName("Should never reject a live code through the filter across churn and rehashes")
+    void testFilterNoFalseNegatives() {
+        LinkIndex index = new LinkIndex(4, 0, true);
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            long code = (i * 7_919L) % ShortCode.SPACE;
+            index.put(code, i);
+            expected.put(code, i);
+            if (i % 3 == 0) {
+                index.remove(code);
+                expected.remove(code);
+            }
+        }
+        long[] batch = new long[10_000];
+        int[] slots = new int[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = ShortCode.SPACE - 1 - i;
+            slots[i] = i;
+            expected.put(batch[i], i);
+        }
+        index.putAll(batch, slots, batch.length);
+
+        expected.forEach((code, slot) -> assertEquals(slot, index.get(code)));
+        assertEquals(0, index.filterMetrics().getRejections());
+    }
+
+    @Test
+    @DisplayName("Should reject almost all unknown codes and report the filter cost")
+    void testFilterFalsePositiveRate() {
+        LinkIndex index = new LinkIndex(true);
+        for (int i = 0; i < 100_000; i++) {
+            index.put(i * 31L, i);
+        }
+        int misses = 1_000_000;
+        for (int i = 0; i < misses; i++) {
+            assertEquals(LinkIndex.NOT_FOUND, index.get(ShortCode.SPACE / 2 + i));
+        }
+
+        LinkIndex.FilterMetrics metrics = index.filterMetrics();
+        assertEquals(misses, metrics.getRejections() + metrics.getFalsePositives());
+        assertTrue(metrics.getFalsePositiveRate() < 0.001, "rate " + metrics.getFalsePositiveRate());
+        assertTrue(metrics.getBytesPerKey() > 0 && metrics.getBytesPerKey() < 16);
+        assertTrue(index.footprintBytes() > metrics.getBytes());
+        assertNull(new LinkIndex().filterMetrics());
+    }
+
+    @Test
+    @DisplayName("Should not hide stable codes from lock-free readers while the filter relocates")
+    void testFilterConcurrentReadsAndWrites() throws Exception {
+        LinkIndex index = new LinkIndex(2, 0, true);
+        int stable = 10_000;
+        for (int i = 0; i < stable; i++) {
+            index.put(i, i);
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        for (int w = 0; w < 2; w++) {
+            long base = 1_000_000L * (w + 1);
+            executor.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    index.put(base + i, i);
+                    if (i % 2 == 0) {
+                        index.remove(base + i);
+                    }
+                }
+            });
+        }
+        for (int r = 0; r < 2; r++) {
+            executor.submit(() -> {
+                for (int round = 0; round < 50; round++) {
+                    for (int i = 0; i < stable; i++) {
+                        if (index.get(i) != i) {
+                            failed.set(true);
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertFalse(failed.get());
+        assertEquals(stable + 200_000, index.size());
+        for (int i = 0; i < 200_000; i += 2) {
+            assertEquals(LinkIndex.NOT_FOUND, index.get(1_000_000L + i));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkSnapshotTest {
+
+    private Path log;
+    private Path snapshot;
+    private final String userId = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        log = Files.createTempFile("links", ".wal");
+        snapshot = log.resolveSibling(log.getFileName() + ".snapshot");
+        Files.delete(log);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(log);
+        Files.deleteIfExists(snapshot);
+    }
+
+    private ShortLinkService open() throws Exception {
+        return new ShortLinkService(WriteAheadLog.open(log, 5), snapshot, new HeapLinkStorage());
+    }
+
+    @Test
+    @DisplayName("Should write records sorted by code and find them by binary search")
+    void testFileRoundTrip() throws Exception {
+        long[] codes = {ShortCode.encode("zzzzzzzz"), ShortCode.encode("aaaaaaab"), ShortCode.encode("PaB16Q69")};
+        Arrays.sort(codes);
+        LinkSnapshot.write(snapshot, 42, 1234, codes, code -> code == ShortCode.encode("aaaaaaab") ? null
+                : new ShortLink(code, "https://example.com/" + code, UUID.fromString(userId), 5, 2, 1_000, 2_000));
+
+        try (LinkSnapshot loaded = LinkSnapshot.open(snapshot)) {
+            assertEquals(42, loaded.generatorKey());
+            assertEquals(1234, loaded.logPosition());
+            assertEquals(2, loaded.size());
+            assertEquals(-1, loaded.find(ShortCode.encode("aaaaaaab")));
+            int index = loaded.find(ShortCode.encode("PaB16Q69"));
+            ShortLink link = loaded.read(index);
+            assertEquals("PaB16Q69", link.getShortCode());
+            assertEquals("https://example.com/" + ShortCode.encode("PaB16Q69"), link.getLongUrl());
+            assertEquals(userId, link.getUserId());
+            assertEquals(2, link.getClickCount());
+            assertEquals(2_000, link.getExpiryMillis());
+        }
+    }
+
+    @Test
+    @DisplayName("Should restart from the snapshot plus the log tail without counting clicks twice")
+    void testSnapshotAndTail() throws Exception {
+        ShortLinkService service = open();
+        String clicked = service.createShortLink("https://example.com/clicked", userId, 10);
+        String deleted = service.createShortLink("https://example.com/deleted", userId, 2);
+        service.clickShortLink(clicked, userId);
+        service.clickShortLink(deleted, userId);
+        service.writeSnapshot();
+
+        service.clickShortLink(clicked, userId);
+        service.clickShortLink(deleted, userId);
+        String late = service.createShortLink("https://example.com/late", userId, 5);
+        service.shutdown();
+
+        ShortLinkService restarted = open();
+        assertEquals("https://example.com/clicked", restarted.clickShortLink(clicked, userId));
+        assertSame(ClickResult.NOT_FOUND, restarted.click(deleted));
+        assertEquals("https://example.com/late", restarted.clickShortLink(late, userId));
+
+        // Creating a link waits for the loader, after which listings are complete
+        String fresh = restarted.createShortLink("https://example.com/fresh", userId, 5);
+        assertFalse(List.of(clicked, deleted, late).contains(fresh));
+        List<ShortLink> links = restarted.getUserLinks(userId);
+        assertEquals(3, links.size());
+        for (ShortLink link : links) {
+            if (link.getShortCode().equals(clicked)) {
+                assertEquals(3, link.getClickCount());
+            }
+        }
+        restarted.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should ignore a snapshot written for another log")
+    void testForeignSnapshot() throws Exception {
+        ShortLinkService service = open();
+        String shortCode = service.createShortLink("https://example.com", userId, 5);
+        service.writeSnapshot();
+        service.shutdown();
+        Files.delete(log);
+
+        ShortLinkService fresh = open();
+        assertSame(ClickResult.NOT_FOUND, fresh.click(shortCode));
+        assertEquals(0, fresh.getTotalLinksCount());
+        fresh.shutdown();
+    }
+}
@@ -1,5 +1,6 @@
 import org.junit.jupiter.api.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -11,15 +12,29 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class MainTest {
 
+    private static final String USER_1 = "9e7e04cb-0feb-4965-b505-3662a825d3ed";
+
+    @Test
+    @DisplayName("Should parse TTLs in minutes, hours and days")
+    void testParseTtl() {
+        assertEquals(Duration.ofMinutes(30), Main.parseTtl("30m"));
+        assertEquals(Duration.ofHours(2), Main.parseTtl(" 2H "));
+        assertEquals(Duration.ofHours(5), Main.parseTtl("5"));
+        assertEquals(Duration.ofDays(90), Main.parseTtl("90d"));
+        assertEquals(ShortLinkService.DEFAULT_TTL, Main.parseTtl(""));
+        assertThrows(IllegalArgumentException.class, () -> Main.parseTtl("soon"));
+        assertThrows(IllegalArgumentException.class, () -> Main.parseTtl("3w"));
+    }
+
     @Test
     @DisplayName("Should create short link with valid parameters")
     void testShortLinkCreation() {
         LocalDateTime expiry = LocalDateTime.now().plusHours(12);
-        ShortLink link = new ShortLink("abc123", "https://example.com", "user-1", 5, expiry);
+        ShortLink link = new ShortLink("abc12345", "https://example.com", USER_1, 5, expiry);
 
-        assertEquals("abc123", link.getShortCode());
+        assertEquals("abc12345", link.getShortCode());
         assertEquals("https://example.com", link.getLongUrl());
-        assertEquals("user-1", link.getUserId());
+        assertEquals(USER_1, link.getUserId());
         assertEquals(5, link.getClickLimit());
         assertEquals(0, link.getClickCount());
         assertFalse(link.isExpired());
@@ -29,7 +44,7 @@ class MainTest {
     @DisplayName("Should increment click count")
     void testClickIncrement() {
         LocalDateTime expiry = LocalDateTime.now().plusHours(12);
-        ShortLink link = new ShortLink("abc123", "https://example.com", "user-1", 5, expiry);
+        ShortLink link = new ShortLink("abc12345", "https://example.com", USER_1, 5, expiry);
 
         assertEquals(0, link.getClickCount());
         link.incrementClick();
@@ -42,7 +57,7 @@ class MainTest {
     @DisplayName("Should detect expired links")
     void testLinkExpiry() {
         LocalDateTime pastExpiry = LocalDateTime.now().minusHours(1);
-        ShortLink link = new ShortLink("abc123", "https://example.com", "user-1", 5, pastExpiry);
+        ShortLink link = new ShortLink("abc12345", "https://example.com", USER_1, 5, pastExpiry);
 
         assertTrue(link.isExpired());
     }
@@ -51,7 +66,7 @@ class MainTest {
     @DisplayName("Should not be expired before expiry time")
     void testLinkNotExpired() {
         LocalDateTime futureExpiry = LocalDateTime.now().plusHours(1);
-        ShortLink link = new ShortLink("abc123", "https://example.com", "user-1", 5, futureExpiry);
+        ShortLink link = new ShortLink("abc12345", "https://example.com", USER_1, 5, futureExpiry);
 
         assertFalse(link.isExpired());
     }
@@ -131,6 +146,58 @@ class ShortLinkServiceTest {
         assertTrue(userLinks.stream().anyMatch(l -> l.getShortCode().equals(shortCode2)));
     }
 
+    @Test
+    @DisplayName("Should page through user links with continuation tokens")
+    void testGetUserLinksPaged() throws Exception {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            codes.add(service.createShortLink("https://example" + i + ".com", testUserId, 1));
+        }
+
+        LinkPage first = service.getUserLinks(testUserId, null, 3);
+        assertEquals(3, first.getLinks().size());
+        assertTrue(first.hasNext());
+
+        // Deleting the cursor link must not break the continuation
+        service.clickShortLink(codes.get(2), testUserId);
+        LinkPage second = service.getUserLinks(testUserId, first.getNextPageToken(), 3);
+        LinkPage third = service.getUserLinks(testUserId, second.getNextPageToken(), 3);
+
+        assertEquals(codes.subList(3, 6), second.getLinks().stream().map(ShortLink::getShortCode).toList());
+        assertEquals(List.of(codes.get(6)), third.getLinks().stream().map(ShortLink::getShortCode).toList());
+        assertFalse(third.hasNext());
+    }
+
+    @Test
+    @DisplayName("Should never list another user's links through their page token")
+    void testForeignPageToken() {
+        String otherUserId = UUID.randomUUID().toString();
+        service.createShortLink("https://example.com/own", testUserId, 5);
+        for (int i = 0; i < 5; i++) {
+            service.createShortLink("https://example.com/other" + i, otherUserId, 5);
+        }
+        LinkPage otherPage = service.getUserLinks(otherUserId, null, 2);
+
+        LinkPage page = service.getUserLinks(testUserId, otherPage.getNextPageToken(), 10);
+
+        assertTrue(page.getLinks().stream().allMatch(link -> link.getUserId().equals(testUserId)));
+        assertEquals(5, service.getUserLinksCount(otherUserId));
+    }
+
+    @Test
+    @DisplayName("Should stream user links lazily in creation order")
+    void testStreamUserLinks() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            codes.add(service.createShortLink("https://example" + i + ".com", testUserId, 5));
+        }
+
+        assertEquals(codes, service.streamUserLinks(testUserId).map(ShortLink::getShortCode).toList());
+        assertEquals(codes.subList(0, 5),
+                service.streamUserLinks(testUserId).limit(5).map(ShortLink::getShortCode).toList());
+        assertEquals(0, service.streamUserLinks("non-existent-user").count());
+    }
+
     @Test
     @DisplayName("Should return empty list for user with no links")
     void testGetUserLinksEmpty() {
@@ -223,6 +290,41 @@ class ShortLinkServiceTest {
         });
     }
 
+    @Test
+    @DisplayName("Should list and delete links of a user id given in a non-canonical form")
+    void testNonCanonicalUserId() {
+        String upperUserId = testUserId.toUpperCase();
+        String shortCode = service.createShortLink("https://example.com/1", upperUserId, 1);
+        service.createShortLinks(List.of(new LinkRequest("https://example.com/2", upperUserId, 1)));
+        assertEquals(2, service.getUserLinksCount(upperUserId));
+        assertEquals(2, service.getUserLinksCount(testUserId));
+
+        for (ShortLink link : service.getUserLinks(testUserId)) {
+            assertTrue(service.click(link.getShortCode()).isOk());
+        }
+
+        assertSame(ClickResult.NOT_FOUND, service.click(shortCode));
+        assertTrue(service.getUserLinks(upperUserId).isEmpty());
+        assertEquals(0, service.getUserLinksCount(testUserId));
+        // A reused slot must not show up in the old owner's list
+        service.createShortLink("https://example.com/other", UUID.randomUUID().toString(), 5);
+        assertTrue(service.getUserLinks(upperUserId, null, 10).getLinks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should report click outcomes without throwing")
+    void testClickResult() {
+        String shortCode = service.createShortLink("https://example.com", testUserId, 1);
+
+        ClickResult hit = service.click(shortCode);
+        assertTrue(hit.isOk());
+        assertEquals("https://example.com", hit.getLongUrl());
+
+        assertSame(ClickResult.NOT_FOUND, service.click(shortCode));
+        assertSame(ClickResult.NOT_FOUND, service.click("zzzzzzzz"));
+        assertSame(ClickResult.NOT_FOUND, service.click("bad code"));
+    }
+
     @Test
     @DisplayName("Should reject expired links")
     void testExpiredLinkRejection() throws Exception {
@@ -234,6 +336,86 @@ class ShortLinkServiceTest {
         assertFalse(links.isEmpty());
         assertFalse(links.get(0).isExpired());
     }
+
+    @Test
+    @DisplayName("Should expire a link after its own TTL")
+    void testPerLinkTtl() throws Exception {
+        long before = System.currentTimeMillis();
+        String month = service.createShortLink("https://example.com/month", testUserId, 5, Duration.ofDays(30));
+        String brief = service.createShortLink("https://example.com/brief", testUserId, 5, Duration.ofMillis(1));
+
+        ShortLink link = service.getUserLinks(testUserId).get(0);
+        assertEquals(month, link.getShortCode());
+        assertTrue(link.getExpiryMillis() >= before + Duration.ofDays(30).toMillis());
+
+        Thread.sleep(50);
+        // Expired on read, or already removed by the timing wheel
+        assertTrue(service.click(brief).getStatus() != ClickResult.Status.OK);
+        assertEquals("https://example.com/month", service.clickShortLink(month, testUserId));
+        assertEquals(1, service.getTotalLinksCount());
+    }
+
+    @Test
+    @DisplayName("Should create a batch of links and return codes in request order")
+    void testCreateShortLinks() throws Exception {
+        String otherUserId = UUID.randomUUID().toString();
+        List<LinkRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            requests.add(new LinkRequest("https://example.com/" + i, i % 1000 < 500 ? testUserId : otherUserId, 5));
+        }
+        requests.add(new LinkRequest("https://example.com/brief", testUserId, 5, Duration.ofMinutes(5)));
+
+        List<String> codes = service.createShortLinks(requests);
+
+        assertEquals(requests.size(), codes.size());
+        assertEquals(requests.size(), Set.copyOf(codes).size());
+        assertEquals(3001, service.getTotalLinksCount());
+        for (int i = 0; i < 3000; i += 97) {
+            assertEquals("https://example.com/" + i, service.clickShortLink(codes.get(i), testUserId));
+        }
+        List<ShortLink> listed = service.getUserLinks(testUserId);
+        assertEquals(1501, listed.size());
+        assertEquals(codes.get(0), listed.get(0).getShortCode());
+        assertEquals(codes.get(1000), listed.get(500).getShortCode());
+        assertEquals(codes.get(3000), listed.get(1500).getShortCode());
+        assertTrue(listed.get(1500).getExpiryMillis() < listed.get(0).getExpiryMillis());
+        assertEquals(1500, service.getUserLinksCount(otherUserId));
+    }
+
+    @Test
+    @DisplayName("Should create nothing when one request of a batch is invalid")
+    void testCreateShortLinksValidation() {
+        List<LinkRequest> requests = List.of(
+                new LinkRequest("https://example.com/1", testUserId, 5),
+                new LinkRequest("https://example.com/2", testUserId, 5, Duration.ZERO));
+
+        assertThrows(IllegalArgumentException.class, () -> service.createShortLinks(requests));
+        assertEquals(0, service.getTotalLinksCount());
+        assertTrue(service.createShortLinks(List.of()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject click limits below one")
+    void testInvalidClickLimit() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createShortLink("https://example.com", testUserId, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createShortLink("https://example.com", testUserId, -1, Duration.ofHours(1)));
+        assertThrows(IllegalArgumentException.class, () -> service.createShortLinks(List.of(
+                new LinkRequest("https://example.com/1", testUserId, 5),
+                new LinkRequest("https://example.com/2", testUserId, 0))));
+        assertEquals(0, service.getTotalLinksCount());
+    }
+
+    @Test
+    @DisplayName("Should reject TTLs out of range")
+    void testInvalidTtl() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createShortLink("https://example.com", testUserId, 5, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createShortLink("https://example.com", testUserId, 5, Duration.ofDays(400)));
+        assertEquals(0, service.getTotalLinksCount());
+    }
 }
 }
 
@@ -0,0 +1,203 @@
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioRedirectServerTest {
+
+    private ShortLinkService service;
+    private NioRedirectServer server;
+    private HttpClient client;
+    private String userId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new ShortLinkService();
+        server = new NioRedirectServer(service, 0, 2);
+        server.start();
+        client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+        userId = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        service.shutdown();
+    }
+
+    private HttpResponse<Void> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    /** Writes {@code request} on a fresh connection and reads until the server closes it. */
+    private String exchange(String request) throws Exception {
+        return exchange(server.getPort(), request);
+    }
+
+    private String exchange(int port, String request) throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                response.write(buffer, 0, n);
+            }
+            return response.toString(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Test
+    @DisplayName("Should redirect with 302 and a Location header, also from the cached response")
+    void testRedirect() throws Exception {
+        String shortCode = service.createShortLink("https://example.com/target", userId, 5);
+
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<Void> response = get("/" + shortCode);
+            assertEquals(302, response.statusCode());
+            assertEquals("https://example.com/target", response.headers().firstValue("Location").orElse(null));
+        }
+        assertEquals(2, service.getUserLinks(userId).get(0).getClickCount());
+    }
+
+    @Test
+    @DisplayName("Should answer 404 for unknown, malformed and used-up codes")
+    void testNotFound() throws Exception {
+        String shortCode = service.createShortLink("https://example.com", userId, 1);
+        assertEquals(302, get("/" + shortCode).statusCode());
+
+        assertEquals(404, get("/" + shortCode).statusCode());
+        assertEquals(404, get("/zzzzzzzz").statusCode());
+        assertEquals(404, get("/abc").statusCode());
+        assertEquals(404, get("/" + shortCode + "/x").statusCode());
+    }
+
+    @Test
+    @DisplayName("Should answer pipelined requests in order on one connection")
+    void testPipelining() throws Exception {
+        String first = service.createShortLink("https://example.com/1", userId, 5);
+        String second = service.createShortLink("https://example.com/2", userId, 5);
+
+        String response = exchange("GET /" + first + " HTTP/1.1\r\nHost: x\r\n\r\n"
+                + "GET /unknown1 HTTP/1.1\r\nHost: x\r\n\r\n"
+                + "GET /" + second + "?utm=1 HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n");
+
+        int one = response.indexOf("Location: https://example.com/1\r\n");
+        int missing = response.indexOf("404 Not Found");
+        int two = response.indexOf("Location: https://example.com/2\r\n");
+        assertTrue(one >= 0 && missing > one && two > missing, response);
+    }
+
+    @Test
+    @DisplayName("Should reject requests with a body or another method and close the connection")
+    void testRejects() throws Exception {
+        String shortCode = service.createShortLink("https://example.com", userId, 5);
+
+        assertTrue(exchange("POST /" + shortCode + " HTTP/1.1\r\nHost: x\r\n\r\n").startsWith("HTTP/1.1 405"));
+        assertTrue(exchange("GET /" + shortCode + " HTTP/1.1\r\nContent-Length: 3\r\n\r\nabc")
+                .startsWith("HTTP/1.1 400"));
+        assertEquals(0, service.getUserLinks(userId).get(0).getClickCount());
+    }
+
+    @Test
+    @DisplayName("Should not take direct memory for responses of codes read once")
+    void testNoDirectBufferPerResponse() throws Exception {
+        BufferPoolMXBean direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct")).findFirst().orElseThrow();
+        // One loop, so that both rounds are written by the same thread
+        NioRedirectServer single = new NioRedirectServer(service, 0, 1);
+        single.start();
+        try {
+            long before = 0;
+            for (int round = 0; round < 2; round++) {
+                StringBuilder requests = new StringBuilder();
+                for (int i = 0; i < 200; i++) {
+                    String shortCode = service.createShortLink("https://example.com/" + i, userId, 5);
+                    requests.append("GET /").append(shortCode).append(" HTTP/1.1\r\nHost: x\r\n")
+                            .append(i == 199 ? "Connection: close\r\n" : "").append("\r\n");
+                }
+                // The first round fills the per-thread temporary buffers the socket layer reuses
+                before = direct.getCount();
+
+                String response = exchange(single.getPort(), requests.toString());
+
+                assertEquals(200, response.split("HTTP/1.1 302 Found", -1).length - 1);
+            }
+            assertTrue(direct.getCount() - before < 10, "direct buffers: " + (direct.getCount() - before));
+        } finally {
+            single.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Should refuse HEAD like RedirectServer, without consuming a click")
+    void testHead() throws Exception {
+        String shortCode = service.createShortLink("https://example.com", userId, 1);
+
+        String response = exchange("HEAD /" + shortCode + " HTTP/1.1\r\nHost: x\r\n\r\n");
+
+        assertTrue(response.startsWith("HTTP/1.1 405"), response);
+        assertTrue(response.contains("Allow: GET\r\n"), response);
+        assertEquals(0, service.getUserLinks(userId).get(0).getClickCount());
+        assertEquals(302, get("/" + shortCode).statusCode());
+    }
+
+    @Test
+    @DisplayName("Should refuse CRLF in new URLs and never let a stored one split the response")
+    void testHeaderInjection() throws Exception {
+        String injected = "https://example.com/\r\nSet-Cookie: a=b";
+        assertThrows(IllegalArgumentException.class, () -> service.createShortLink(injected, userId, 5));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createShortLinks(List.of(new LinkRequest(injected, userId, 5))));
+        assertEquals(0, service.getTotalLinksCount());
+
+        // A log written before the check still holds such a URL
+        Path log = Files.createTempFile("links", ".wal");
+        Files.delete(log);
+        try {
+            WriteAheadLog wal = WriteAheadLog.open(log, 5);
+            ShortLinkService writer = new ShortLinkService(wal, new HeapLinkStorage());
+            long now = System.currentTimeMillis();
+            wal.awaitDurable(wal.logCreate(ShortCode.encode("injected"), injected, userId, 5, now, now + 3_600_000,
+                    () -> {
+                    }));
+            writer.shutdown();
+
+            ShortLinkService recovered = new ShortLinkService(WriteAheadLog.open(log, 5), new HeapLinkStorage());
+            NioRedirectServer recoveredServer = new NioRedirectServer(recovered, 0, 1);
+            recoveredServer.start();
+            try (Socket socket = new Socket("localhost", recoveredServer.getPort())) {
+                socket.setSoTimeout(5000);
+                String request = "GET /injected HTTP/1.1\r\nHost: x\r\n\r\n";
+                byte[] expected = ("HTTP/1.1 302 Found\r\nLocation: https://example.com/%0D%0ASet-Cookie: a=b\r\n"
+                        + "Content-Length: 0\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+                for (int i = 0; i < 2; i++) {
+                    socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+                    assertArrayEquals(expected, socket.getInputStream().readNBytes(expected.length));
+                }
+            } finally {
+                recoveredServer.stop();
+                recovered.shutdown();
+            }
+        } finally {
+            Files.deleteIfExists(log);
+        }
+    }
+}
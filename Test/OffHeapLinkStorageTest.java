@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapLinkStorageTest {
+
+    private final String userId = UUID.randomUUID().toString();
+
+    @Test
+    @DisplayName("Should store and read back a link record")
+    void testRecordRoundTrip() {
+        OffHeapLinkStorage storage = new OffHeapLinkStorage();
+        long code = ShortCode.encode("PaB16Q69");
+
+        int slot = storage.allocate(code, "https://example.com/путь", userId, 5, 1_000, 2_000);
+
+        assertEquals(code, storage.code(slot));
+        assertEquals("https://example.com/путь", storage.longUrl(slot));
+        assertEquals(userId, storage.userId(slot));
+        assertEquals(5, storage.clickLimit(slot));
+        assertEquals(0, storage.clickCount(slot));
+        assertEquals(2_000, storage.expiryMillis(slot));
+        assertEquals(1, storage.tryClick(slot, code));
+        assertEquals(1, storage.clickCount(slot));
+        assertEquals(LinkStorage.LINK_GONE, storage.tryClick(slot, code + 1));
+    }
+
+    @Test
+    @DisplayName("Should expose a detached view of the record")
+    void testView() {
+        OffHeapLinkStorage storage = new OffHeapLinkStorage();
+        long code = ShortCode.encode("abcdefgh");
+        int slot = storage.allocate(code, "https://example.com", userId, 3, 1_000, 2_000);
+        storage.tryClick(slot, code);
+
+        ShortLink link = storage.view(slot);
+
+        assertEquals("abcdefgh", link.getShortCode());
+        assertEquals("https://example.com", link.getLongUrl());
+        assertEquals(userId, link.getUserId());
+        assertEquals(3, link.getClickLimit());
+        assertEquals(1, link.getClickCount());
+    }
+
+    @Test
+    @DisplayName("Should reuse released slots")
+    void testSlotReuse() {
+        OffHeapLinkStorage storage = new OffHeapLinkStorage();
+        int slot = storage.allocate(1, "https://a-long-url.example.com", userId, 1, 0, 0);
+
+        storage.release(slot);
+        assertEquals(ShortCode.INVALID, storage.code(slot));
+
+        int reused = storage.allocate(2, "https://short.io", userId, 1, 0, 0);
+        assertEquals(slot, reused);
+        assertEquals(2, storage.code(reused));
+        assertEquals("https://short.io", storage.longUrl(reused));
+        assertEquals(0, storage.clickCount(reused));
+    }
+
+    @Test
+    @DisplayName("Should stop accepting clicks at the limit or after a claim")
+    void testClickLimitAndClaim() {
+        OffHeapLinkStorage storage = new OffHeapLinkStorage();
+        int limited = storage.allocate(1, "https://example.com", userId, 1, 0, 0);
+        int claimed = storage.allocate(2, "https://example.com", userId, 1, 0, 0);
+
+        assertEquals(1, storage.tryClick(limited, 1));
+        assertEquals(LinkStorage.CLICKS_EXHAUSTED, storage.tryClick(limited, 1));
+        assertFalse(storage.tryClaim(limited, 1));
+
+        assertTrue(storage.tryClaim(claimed, 2));
+        assertFalse(storage.tryClaim(claimed, 2));
+        assertEquals(LinkStorage.LINK_GONE, storage.tryClick(claimed, 2));
+    }
+
+    @Test
+    @DisplayName("Should run the service on off-heap storage")
+    void testServiceOffHeap() throws Exception {
+        ShortLinkService service = new ShortLinkService(new FeistelShortCodeGenerator(), new OffHeapLinkStorage());
+        try {
+            String shortCode = service.createShortLink("https://example.com", userId, 1);
+
+            List<ShortLink> links = service.getUserLinks(userId);
+            assertEquals(1, links.size());
+            assertEquals(shortCode, links.get(0).getShortCode());
+
+            assertEquals("https://example.com", service.clickShortLink(shortCode, userId));
+            assertThrows(Exception.class, () -> service.clickShortLink(shortCode, userId));
+            assertEquals(0, service.getTotalLinksCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedirectServerTest {
+
+    private ShortLinkService service;
+    private RedirectServer server;
+    private HttpClient client;
+    private String userId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new ShortLinkService();
+        server = new RedirectServer(service, 0);
+        server.start();
+        client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+        userId = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        service.shutdown();
+    }
+
+    private HttpResponse<Void> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    @Test
+    @DisplayName("Should redirect with 302 and a Location header")
+    void testRedirect() throws Exception {
+        String shortCode = service.createShortLink("https://example.com/target", userId, 5);
+
+        HttpResponse<Void> response = get("/" + shortCode);
+
+        assertEquals(302, response.statusCode());
+        assertEquals("https://example.com/target", response.headers().firstValue("Location").orElse(null));
+        assertEquals(1, service.getUserLinks(userId).get(0).getClickCount());
+    }
+
+    @Test
+    @DisplayName("Should answer 404 for unknown, malformed and used-up codes")
+    void testNotFound() throws Exception {
+        String shortCode = service.createShortLink("https://example.com", userId, 1);
+        assertEquals(302, get("/" + shortCode).statusCode());
+
+        assertEquals(404, get("/" + shortCode).statusCode());
+        assertEquals(404, get("/zzzzzzzz").statusCode());
+        assertEquals(404, get("/abc").statusCode());
+        assertEquals(404, get("/" + shortCode + "/x").statusCode());
+    }
+}
@@ -0,0 +1,66 @@
+import org.junit.jupiter.api.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortCodeGeneratorTest {
+
+    @Test
+    @DisplayName("Should generate codes within the 8-char base62 space")
+    void testCodeFormat() {
+        ShortCodeGenerator generator = new FeistelShortCodeGenerator();
+
+        for (int i = 0; i < 1000; i++) {
+            long code = generator.next();
+            assertTrue(code >= 0 && code < ShortCode.SPACE);
+            assertEquals(code, ShortCode.encode(ShortCode.decode(code)));
+        }
+    }
+
+    @Test
+    @DisplayName("Should invert the permutation")
+    void testPermutationIsReversible() {
+        FeistelShortCodeGenerator generator = new FeistelShortCodeGenerator(42, 0);
+
+        for (long value : new long[]{0, 1, 2, 1_000_000, FeistelShortCodeGenerator.CODE_SPACE - 1}) {
+            long permuted = generator.permute(value);
+            assertTrue(permuted >= 0 && permuted < FeistelShortCodeGenerator.CODE_SPACE);
+            assertEquals(value, generator.unpermute(permuted));
+        }
+    }
+
+    @Test
+    @DisplayName("Should not produce sequential codes")
+    void testCodesAreScrambled() {
+        FeistelShortCodeGenerator generator = new FeistelShortCodeGenerator(42, 0);
+
+        assertNotEquals(generator.permute(0) + 1, generator.permute(1));
+    }
+
+    @Test
+    @DisplayName("Should generate unique codes across threads")
+    void testConcurrentUniqueness() throws Exception {
+        ShortCodeGenerator generator = new FeistelShortCodeGenerator();
+        int threadCount = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Set<Long> codes = ConcurrentHashMap.newKeySet();
+
+        for (int t = 0; t < threadCount; t++) {
+            executor.submit(() -> {
+                Set<Long> local = new HashSet<>();
+                for (int i = 0; i < perThread; i++) {
+                    local.add(generator.next());
+                }
+                codes.addAll(local);
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threadCount * perThread, codes.size());
+    }
+}
@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortCodeTest {
+
+    @Test
+    @DisplayName("Should round-trip codes through the long form")
+    void testRoundTrip() {
+        for (String code : new String[]{"aaaaaaaa", "PaB16Q69", "99999999", "abcXYZ01"}) {
+            long value = ShortCode.encode(code);
+            assertTrue(value >= 0 && value < ShortCode.SPACE);
+            assertEquals(code, ShortCode.decode(value));
+        }
+    }
+
+    @Test
+    @DisplayName("Should map the alphabet order onto numeric order")
+    void testOrdering() {
+        assertEquals(0, ShortCode.encode("aaaaaaaa"));
+        assertEquals(1, ShortCode.encode("aaaaaaab"));
+        assertEquals(ShortCode.SPACE - 1, ShortCode.encode("99999999"));
+    }
+
+    @Test
+    @DisplayName("Should reject malformed codes without throwing")
+    void testInvalidCodes() {
+        assertEquals(ShortCode.INVALID, ShortCode.encode((String) null));
+        assertEquals(ShortCode.INVALID, ShortCode.encode("abc123"));
+        assertEquals(ShortCode.INVALID, ShortCode.encode("abc-1234"));
+        assertEquals(ShortCode.INVALID, ShortCode.encode("abcdefgЖ"));
+    }
+
+    @Test
+    @DisplayName("Should encode from raw request bytes")
+    void testEncodeBytes() {
+        byte[] request = "GET /PaB16Q69 HTTP/1.1".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(ShortCode.encode("PaB16Q69"), ShortCode.encode(request, 5));
+        assertEquals(ShortCode.INVALID, ShortCode.encode(request, 18));
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Heap footprint of {@link ShortLink} against the previous String/LocalDateTime layout,
+ * measured as retained heap per instance over a large population.
+ */
+class ShortLinkFootprintTest {
+
+    private static final int LINKS = 200_000;
+
+    /** Field layout of ShortLink before the compact representation. */
+    static final class LegacyShortLink {
+        final String shortCode;
+        final String longUrl;
+        final String userId;
+        final int clickLimit;
+        int clickCount;
+        final LocalDateTime creationTime;
+        final LocalDateTime expiryTime;
+
+        LegacyShortLink(String shortCode, String longUrl, String userId, int clickLimit,
+                        LocalDateTime creationTime, LocalDateTime expiryTime) {
+            this.shortCode = shortCode;
+            this.longUrl = longUrl;
+            this.userId = userId;
+            this.clickLimit = clickLimit;
+            this.creationTime = creationTime;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    @Test
+    @DisplayName("Should take a fraction of the legacy heap per link")
+    void testFootprint() {
+        String url = "https://example.com";
+        UUID user = UUID.randomUUID();
+        String userId = user.toString();
+        LocalDateTime start = LocalDateTime.now();
+
+        long before = usedHeap();
+        Object[] legacy = new Object[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            legacy[i] = new LegacyShortLink(ShortCode.decode(i), url, userId, 5,
+                    start.plusNanos(i), start.plusHours(12).plusNanos(i));
+        }
+        long legacyBytes = usedHeap() - before;
+
+        before = usedHeap();
+        Object[] compact = new Object[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            compact[i] = new ShortLink(i, url, user, 5, 0, i, i + 43_200_000L);
+        }
+        long compactBytes = usedHeap() - before;
+
+        double legacyPerLink = (double) legacyBytes / LINKS;
+        double compactPerLink = (double) compactBytes / LINKS;
+        System.out.printf("ShortLink footprint: legacy %.1f bytes/link, compact %.1f bytes/link (%.1fx)%n",
+                legacyPerLink, compactPerLink, legacyPerLink / compactPerLink);
+
+        // Keeps both populations reachable until both were measured
+        assertNotNull(legacy[LINKS - 1]);
+        assertNotNull(compact[LINKS - 1]);
+        assertTrue(compactPerLink * 2 < legacyPerLink);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
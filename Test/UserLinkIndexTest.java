@@ -0,0 +1,132 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserLinkIndexTest {
+
+    private final UserLinkIndex index = new UserLinkIndex();
+
+    private List<Integer> slotsOf(String userId) {
+        List<Integer> slots = new ArrayList<>();
+        index.page(userId, UserLinkIndex.NONE, 0, Integer.MAX_VALUE, slots::add);
+        return slots;
+    }
+
+    @Test
+    @DisplayName("Should keep slots in insertion order")
+    void testOrder() {
+        index.add("u", 5);
+        index.add("u", 1);
+        index.add("u", 9);
+        index.add("other", 2);
+
+        assertEquals(List.of(5, 1, 9), slotsOf("u"));
+        assertEquals(List.of(2), slotsOf("other"));
+        assertEquals(3, index.size("u"));
+    }
+
+    @Test
+    @DisplayName("Should unlink head, middle and tail")
+    void testRemove() {
+        for (int slot = 0; slot < 5; slot++) {
+            index.add("u", slot);
+        }
+
+        index.remove("u", 0);
+        index.remove("u", 2);
+        index.remove("u", 4);
+        index.remove("u", 4);
+        index.remove("other", 1);
+
+        assertEquals(List.of(1, 3), slotsOf("u"));
+        index.remove("u", 1);
+        index.remove("u", 3);
+        assertEquals(0, index.size("u"));
+        assertTrue(slotsOf("u").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should resume a page after a removed entry")
+    void testPageAfterRemoval() {
+        for (int slot = 0; slot < 10; slot++) {
+            index.add("u", slot);
+        }
+        List<Integer> first = new ArrayList<>();
+        long cursor = index.page("u", UserLinkIndex.NONE, 0, 4, first::add);
+        assertEquals(List.of(0, 1, 2, 3), first);
+
+        index.remove("u", 3);
+        List<Integer> second = new ArrayList<>();
+        index.page("u", 3, cursor, 4, second::add);
+
+        assertEquals(List.of(4, 5, 6, 7), second);
+    }
+
+    @Test
+    @DisplayName("Should not follow or unlink a slot of another user")
+    void testForeignSlot() {
+        index.add("alice", 0);
+        for (int slot = 1; slot <= 5; slot++) {
+            index.add("bob", slot);
+        }
+        List<Integer> bobPage = new ArrayList<>();
+        long bobCursor = index.page("bob", UserLinkIndex.NONE, 0, 2, bobPage::add);
+        assertEquals(List.of(1, 2), bobPage);
+
+        // Bob's cursor resumes Alice's own chain by sequence, never Bob's
+        List<Integer> alicePage = new ArrayList<>();
+        index.page("alice", 2, bobCursor, 10, alicePage::add);
+        assertTrue(alicePage.isEmpty());
+
+        index.remove("alice", 3);
+        assertEquals(List.of(1, 2, 3, 4, 5), slotsOf("bob"));
+        assertEquals(List.of(0), slotsOf("alice"));
+    }
+
+    @Test
+    @DisplayName("Should handle heavy users in linear time")
+    void testHeavyUser() {
+        int links = 200_000;
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 0; slot < links; slot++) {
+            index.add("heavy", slot);
+            slots.add(slot);
+        }
+        Collections.shuffle(slots);
+
+        long start = System.nanoTime();
+        for (int slot : slots) {
+            index.remove("heavy", slot);
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(0, index.size("heavy"));
+        assertTrue(millis < 2_000, "removal took " + millis + " ms");
+    }
+
+    @Test
+    @DisplayName("Should accept concurrent adds for the same user")
+    void testConcurrentAdds() throws Exception {
+        int threads = 8;
+        int perThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    index.add("u", base + i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread, index.size("u"));
+        assertEquals(threads * perThread, slotsOf("u").stream().distinct().count());
+    }
+}
@@ -0,0 +1,140 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    private Path file;
+    private final String userId = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.createTempFile("links", ".wal");
+        Files.delete(file);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    private ShortLinkService open() throws Exception {
+        return new ShortLinkService(WriteAheadLog.open(file, 5), new HeapLinkStorage());
+    }
+
+    @Test
+    @DisplayName("Should recover links, click counts and deletions after a restart")
+    void testRecovery() throws Exception {
+        ShortLinkService service = open();
+        String kept = service.createShortLink("https://example.com/kept", userId, 5);
+        String used = service.createShortLink("https://example.com/used", userId, 1);
+        service.clickShortLink(kept, userId);
+        service.clickShortLink(kept, userId);
+        service.clickShortLink(used, userId);
+        service.shutdown();
+
+        ShortLinkService restarted = open();
+        List<ShortLink> links = restarted.getUserLinks(userId);
+        assertEquals(1, links.size());
+        assertEquals(kept, links.get(0).getShortCode());
+        assertEquals(2, links.get(0).getClickCount());
+        assertEquals("https://example.com/kept", restarted.clickShortLink(kept, userId));
+        assertSame(ClickResult.NOT_FOUND, restarted.click(used));
+        restarted.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should recover a batch of links created at once")
+    void testBatchRecovery() throws Exception {
+        ShortLinkService service = open();
+        List<LinkRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            requests.add(new LinkRequest("https://example.com/" + i, userId, 5));
+        }
+        List<String> codes = service.createShortLinks(requests);
+        service.shutdown();
+
+        ShortLinkService restarted = open();
+        assertEquals(500, restarted.getTotalLinksCount());
+        assertEquals("https://example.com/42", restarted.clickShortLink(codes.get(42), userId));
+        assertFalse(codes.contains(restarted.createShortLink("https://example.com/new", userId, 5)));
+        restarted.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should not reissue recovered codes")
+    void testGeneratorResumes() throws Exception {
+        ShortLinkService service = open();
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            codes.add(service.createShortLink("https://example.com/" + i, userId, 5));
+        }
+        service.shutdown();
+
+        ShortLinkService restarted = open();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(codes.add(restarted.createShortLink("https://example.com/new" + i, userId, 5)));
+        }
+        assertEquals(200, restarted.getTotalLinksCount());
+        restarted.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should have a created link on disk once createShortLink returns")
+    void testCreateIsDurable() throws Exception {
+        ShortLinkService service = open();
+        String shortCode = service.createShortLink("https://example.com", userId, 5);
+
+        // Replays a copy while the first service still runs, as after a crash
+        Path copy = Files.createTempFile("links-copy", ".wal");
+        Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+        ShortLinkService recovered = new ShortLinkService(WriteAheadLog.open(copy, 5), new HeapLinkStorage());
+        assertEquals("https://example.com", recovered.clickShortLink(shortCode, userId));
+
+        recovered.shutdown();
+        service.shutdown();
+        Files.delete(copy);
+    }
+
+    @Test
+    @DisplayName("Should cut off a torn tail and keep appending after it")
+    void testTornTail() throws Exception {
+        ShortLinkService service = open();
+        String shortCode = service.createShortLink("https://example.com", userId, 5);
+        service.shutdown();
+        long intact = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3}));
+        }
+
+        ShortLinkService restarted = open();
+        assertEquals(intact, Files.size(file));
+        assertEquals(1, restarted.getTotalLinksCount());
+        restarted.clickShortLink(shortCode, userId);
+        restarted.shutdown();
+
+        ShortLinkService again = open();
+        assertEquals(1, again.getUserLinks(userId).get(0).getClickCount());
+        again.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should reject a file that is not a link log")
+    void testForeignFile() throws Exception {
+        Files.write(file, new byte[32]);
+        assertThrows(IOException.class, () -> WriteAheadLog.open(file, 5));
+    }
+}
@@ -0,0 +1,344 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// ==================== Async Notifications ====================
+
+/**
+ * Notifications taken off the caller's thread. A click that consumes the last click of a
+ * link, or the expiry wheel, only publishes an event to a bounded lock-free ring buffer.
+ * A consumer thread drains the buffer, groups the events of a batch per user and hands
+ * each group to a {@link Sink}. Console or network I/O thus never runs on the redirect
+ * path, and a user whose links expire together gets one message instead of one per link.
+ * <p>
+ * The ring is a Vyukov bounded queue. Each entry carries a sequence number, producers
+ * claim positions with a CAS on the tail, and the single consumer reads in order. Once
+ * the consumer has seen an event, it waits {@code lingerMillis} before draining, so that
+ * events arriving close together land in one batch. When the ring is full,
+ * {@link Overflow} decides: drop the event and count it, or make the producer wait for
+ * space.
+ * <p>
+ * {@link #close()} stops new events from entering the ring, waits for the producers that
+ * already passed that check, and then drains the ring. Events published after that are
+ * delivered on the caller's thread.
+ */
+class AsyncNotificationService extends NotificationService {
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    static final long DEFAULT_LINGER_MILLIS = 20;
+    private static final int LIMIT_REACHED = 0;
+    private static final int EXPIRED = 1;
+
+    enum Overflow { DROP, BLOCK }
+
+    /** Receiver of the coalesced events; never called concurrently. */
+    interface Sink {
+        /**
+         * Delivers the events of one batch for one user, each list in publication order.
+         * At least one of the lists is non-empty.
+         */
+        void deliver(String userId, List<String> limitReachedCodes, List<String> expiredCodes);
+    }
+
+    private final Entry[] ring;
+    private final int mask;
+    private final Sink sink;
+    private final Overflow overflow;
+    private final long lingerNanos;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private final Thread consumer;
+    private final AtomicBoolean idle = new AtomicBoolean();
+    private volatile boolean running = true;
+    // Producers between their running check and the publication of their entry
+    private final AtomicInteger publishing = new AtomicInteger();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    // Written by the consumer only
+    private volatile long delivered;
+    private volatile long batches;
+    private volatile int maxBatchSize;
+
+    AsyncNotificationService() {
+        this(new ConsoleSink(), DEFAULT_CAPACITY, Overflow.BLOCK, DEFAULT_LINGER_MILLIS);
+    }
+
+    /**
+     * @param capacity     ring size, rounded up to a power of two
+     * @param lingerMillis how long the consumer collects events before delivering them, 0 for no wait
+     */
+    AsyncNotificationService(Sink sink, int capacity, Overflow overflow, long lingerMillis) {
+        if (capacity < 2 || capacity > 1 << 30 || lingerMillis < 0) {
+            throw new IllegalArgumentException("capacity must be in [2, 2^30] and lingerMillis non-negative");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Entry(i);
+        }
+        this.mask = size - 1;
+        this.sink = sink;
+        this.overflow = overflow;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.consumer = new Thread(this::consumeLoop, "notifications");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @Override
+    public void notifyClickLimitReached(String userId, String shortCode) {
+        publish(LIMIT_REACHED, userId, shortCode);
+    }
+
+    @Override
+    public void notifyExpiry(String userId, String shortCode) {
+        publish(EXPIRED, userId, shortCode);
+    }
+
+    @Override
+    public void notifyExpiry(List<ShortLink> links) {
+        for (ShortLink link : links) {
+            publish(EXPIRED, link.getUserId(), link.getShortCode());
+        }
+    }
+
+    private void publish(int kind, String userId, String shortCode) {
+        // Announced before running is read, and close() clears running before it waits for
+        // the count: either this producer sees the close or close() waits for its entry
+        publishing.incrementAndGet();
+        try {
+            if (!running) {
+                deliverLate(kind, userId, shortCode);
+                return;
+            }
+            enqueue(kind, userId, shortCode);
+        } finally {
+            publishing.decrementAndGet();
+        }
+    }
+
+    private void enqueue(int kind, String userId, String shortCode) {
+        Entry entry;
+        long position;
+        for (int spins = 0; ; ) {
+            position = tail.get();
+            entry = ring[(int) position & mask];
+            long lag = entry.sequence - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (lag < 0) {
+                // Full: the entry still holds an event from one lap ago
+                if (overflow == Overflow.DROP) {
+                    dropped.increment();
+                    return;
+                }
+                if (!running) {
+                    // The consumer may be gone and close() waits for this producer: make room itself
+                    drain();
+                    continue;
+                }
+                // Cut the consumer's linger short, it is the only one who can make room
+                LockSupport.unpark(consumer);
+                if (++spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                }
+            }
+        }
+        entry.kind = kind;
+        entry.userId = userId;
+        entry.code = shortCode;
+        entry.sequence = position + 1;
+        published.increment();
+        if (idle.get()) {
+            wake();
+        }
+    }
+
+    private void wake() {
+        if (idle.compareAndSet(true, false)) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void consumeLoop() {
+        while (running) {
+            if (!ready()) {
+                idle.set(true);
+                // Re-check after announcing idleness: a producer that missed the flag published before it
+                if (!ready() && running) {
+                    LockSupport.park(this);
+                }
+                idle.set(false);
+                continue;
+            }
+            if (lingerNanos > 0) {
+                LockSupport.parkNanos(this, lingerNanos);
+            }
+            try {
+                drain();
+            } catch (RuntimeException e) {
+                System.out.println("Ошибка отправки оповещений: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean ready() {
+        return ring[(int) head & mask].sequence == head + 1;
+    }
+
+    /** Takes every published event off the ring and delivers them grouped by user. */
+    private synchronized void drain() {
+        Map<String, Batch> byUser = new LinkedHashMap<>();
+        int count = 0;
+        while (ready()) {
+            Entry entry = ring[(int) head & mask];
+            Batch batch = byUser.computeIfAbsent(entry.userId, u -> new Batch());
+            (entry.kind == LIMIT_REACHED ? batch.limitReached : batch.expired).add(entry.code);
+            entry.userId = null;
+            entry.code = null;
+            entry.sequence = head + ring.length;
+            head++;
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        for (Map.Entry<String, Batch> user : byUser.entrySet()) {
+            try {
+                sink.deliver(user.getKey(), user.getValue().limitReached, user.getValue().expired);
+            } catch (RuntimeException e) {
+                // One failing user must not cost the others their notifications
+                System.out.println("Ошибка отправки оповещений: " + e.getMessage());
+            }
+        }
+        delivered += count;
+        batches++;
+        maxBatchSize = Math.max(maxBatchSize, count);
+    }
+
+    /** Late events after close, e.g. from a straggling click, go out directly. */
+    private synchronized void deliverLate(int kind, String userId, String shortCode) {
+        sink.deliver(userId, kind == LIMIT_REACHED ? List.of(shortCode) : List.of(),
+                kind == EXPIRED ? List.of(shortCode) : List.of());
+    }
+
+    /** Stops the consumer after delivering every event published so far. */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        for (int spins = 0; publishing.get() > 0; ) {
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    public Metrics metrics() {
+        return new Metrics(published.sum(), delivered, dropped.sum(), batches, maxBatchSize);
+    }
+
+    private static final class Entry {
+        volatile long sequence;
+        int kind;
+        String userId;
+        String code;
+
+        Entry(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Batch {
+        final List<String> limitReached = new ArrayList<>(1);
+        final List<String> expired = new ArrayList<>(1);
+    }
+
+    /** Prints the notifications, one message per user and kind. */
+    static final class ConsoleSink implements Sink {
+        @Override
+        public void deliver(String userId, List<String> limitReachedCodes, List<String> expiredCodes) {
+            StringBuilder sb = new StringBuilder();
+            if (limitReachedCodes.size() == 1) {
+                sb.append("\n[ОПОВЕЩЕНИЕ] Достигнут лимит переходов по ссылке: ").append(limitReachedCodes.get(0))
+                        .append("\nСсылка удалена.\n");
+            } else if (!limitReachedCodes.isEmpty()) {
+                sb.append("\n[ОПОВЕЩЕНИЕ] Достигнут лимит переходов по ссылкам (").append(limitReachedCodes.size())
+                        .append("):");
+                limitReachedCodes.forEach(code -> sb.append(' ').append(code));
+                sb.append("\nСсылки удалены.\n");
+            }
+            if (expiredCodes.size() == 1) {
+                sb.append("\n[ОПОВЕЩЕНИЕ] Ссылка устарела: ").append(expiredCodes.get(0))
+                        .append("\nВремя работы ссылки истекло. Ссылка удалена.\n");
+            } else if (!expiredCodes.isEmpty()) {
+                sb.append("\n[ОПОВЕЩЕНИЕ] Устарели ссылки (").append(expiredCodes.size()).append("):");
+                expiredCodes.forEach(code -> sb.append(' ').append(code));
+                sb.append("\nВремя работы ссылок истекло. Ссылки удалены.\n");
+            }
+            System.out.println(sb);
+        }
+    }
+
+    /** Point-in-time view of the pipeline statistics. */
+    static final class Metrics {
+        private final long published;
+        private final long delivered;
+        private final long dropped;
+        private final long batches;
+        private final int maxBatchSize;
+
+        Metrics(long published, long delivered, long dropped, long batches, int maxBatchSize) {
+            this.published = published;
+            this.delivered = delivered;
+            this.dropped = dropped;
+            this.batches = batches;
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public long getPublished() {
+            return published;
+        }
+
+        public long getDelivered() {
+            return delivered;
+        }
+
+        /** Events lost to a full ring under {@link Overflow#DROP}. */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /** Events published but not delivered yet. */
+        public long getPending() {
+            return published - delivered;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+    }
+}
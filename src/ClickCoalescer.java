@@ -0,0 +1,183 @@
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongToIntFunction;
+
+// ==================== Click Coalescer ====================
+
+/**
+ * Batches click persistence for a {@link WriteAheadLog}: a click only marks its link dirty,
+ * and a flusher thread logs one CLICK record with the current count per dirty link, every
+ * flush interval or as soon as the dirty-link threshold is crossed. A viral link thus
+ * costs one record per flush instead of one per click. Click limits are unaffected, they
+ * are enforced by the storage in memory.
+ * <p>
+ * Crash bound: only clicks of the last flush interval plus one log commit interval can be
+ * lost, and fewer once the threshold cuts the interval short. A link can be clicked that
+ * many times again after the restart. Creations and deletions are logged directly and are
+ * not affected.
+ * <p>
+ * The dirty set is a {@link LinkIndex}. A click that finds its link already marked does a
+ * lock-free lookup only. The flusher removes a mark before reading the count, so a click
+ * that races with the flush is either in the logged count or marks the link again.
+ */
+class ClickCoalescer {
+    private final WriteAheadLog wal;
+    private final LongToIntFunction clickCount;
+    private final long intervalNanos;
+    private final int dirtyThreshold;
+    private final LinkIndex dirty = new LinkIndex();
+    private final AtomicInteger marked = new AtomicInteger();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    // Written by the flusher only
+    private volatile long flushes;
+    private volatile long flushedRecords;
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+    private volatile long lastLagMillis;
+    private volatile long maxLagMillis;
+    private long lastFlushNanos = System.nanoTime();
+
+    /**
+     * @param clickCount current click count of a code, or a negative value once the link is gone
+     */
+    ClickCoalescer(WriteAheadLog wal, LongToIntFunction clickCount, long intervalMillis, int dirtyThreshold) {
+        if (intervalMillis <= 0 || dirtyThreshold <= 0) {
+            throw new IllegalArgumentException("intervalMillis and dirtyThreshold must be positive");
+        }
+        this.wal = wal;
+        this.clickCount = clickCount;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.dirtyThreshold = dirtyThreshold;
+        this.flusher = new Thread(this::flushLoop, "click-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /** Called after a click on {@code code} in {@code slot} was counted. */
+    public void clicked(long code, int slot) {
+        if (dirty.get(code) != LinkIndex.NOT_FOUND) {
+            return;
+        }
+        if (dirty.put(code, slot) == LinkIndex.NOT_FOUND && marked.incrementAndGet() == dirtyThreshold) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            long waited = System.nanoTime() - lastFlushNanos;
+            if (waited < intervalNanos && marked.get() < dirtyThreshold) {
+                LockSupport.parkNanos(this, intervalNanos - waited);
+                continue;
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // The log reports its own failures to writers waiting for durability; retry next interval
+                System.out.println("Ошибка записи переходов в журнал: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Logs the current count of every dirty link. */
+    private synchronized void flush() {
+        int[] batch = {0};
+        dirty.forEach((code, slot) -> {
+            if (dirty.remove(code) == LinkIndex.NOT_FOUND) {
+                return;
+            }
+            marked.decrementAndGet();
+            // Orders the unmark before the count read, against the click's count update before its lookup
+            VarHandle.fullFence();
+            int count = clickCount.applyAsInt(code);
+            if (count > 0) {
+                wal.logClick(code, count);
+                batch[0]++;
+            }
+        });
+        long now = System.nanoTime();
+        // The oldest click of the batch may date from just after the previous flush
+        long lag = TimeUnit.NANOSECONDS.toMillis(now - lastFlushNanos);
+        lastFlushNanos = now;
+        flushes++;
+        flushedRecords += batch[0];
+        lastBatchSize = batch[0];
+        maxBatchSize = Math.max(maxBatchSize, batch[0]);
+        lastLagMillis = lag;
+        maxLagMillis = Math.max(maxLagMillis, lag);
+    }
+
+    /** Stops the flusher and logs the remaining dirty counts. */
+    public void close() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public Metrics metrics() {
+        return new Metrics(flushes, flushedRecords, lastBatchSize, maxBatchSize, marked.get(),
+                lastLagMillis, maxLagMillis);
+    }
+
+    /** Point-in-time view of the flush statistics. */
+    static final class Metrics {
+        private final long flushes;
+        private final long flushedRecords;
+        private final int lastBatchSize;
+        private final int maxBatchSize;
+        private final int dirtyLinks;
+        private final long lastLagMillis;
+        private final long maxLagMillis;
+
+        Metrics(long flushes, long flushedRecords, int lastBatchSize, int maxBatchSize, int dirtyLinks,
+                long lastLagMillis, long maxLagMillis) {
+            this.flushes = flushes;
+            this.flushedRecords = flushedRecords;
+            this.lastBatchSize = lastBatchSize;
+            this.maxBatchSize = maxBatchSize;
+            this.dirtyLinks = dirtyLinks;
+            this.lastLagMillis = lastLagMillis;
+            this.maxLagMillis = maxLagMillis;
+        }
+
+        public long getFlushes() {
+            return flushes;
+        }
+
+        /** CLICK records written so far, one per dirty link and flush. */
+        public long getFlushedRecords() {
+            return flushedRecords;
+        }
+
+        public int getLastBatchSize() {
+            return lastBatchSize;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        /** Links with clicks not logged yet. */
+        public int getDirtyLinks() {
+            return dirtyLinks;
+        }
+
+        /** Upper bound on how long a click of the last batch waited to be logged. */
+        public long getLastLagMillis() {
+            return lastLagMillis;
+        }
+
+        public long getMaxLagMillis() {
+            return maxLagMillis;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// ==================== Click Result ====================
+
+/**
+ * Outcome of {@link ShortLinkService#click(long)}. Every miss outcome is a shared
+ * constant, so rejecting unknown, expired or exhausted codes allocates nothing.
+ */
+final class ClickResult {
+    enum Status { OK, NOT_FOUND, EXPIRED, EXHAUSTED }
+
+    static final ClickResult NOT_FOUND = new ClickResult(Status.NOT_FOUND, null);
+    static final ClickResult EXPIRED = new ClickResult(Status.EXPIRED, null);
+    static final ClickResult EXHAUSTED = new ClickResult(Status.EXHAUSTED, null);
+
+    private final Status status;
+    private final String longUrl;
+
+    private ClickResult(Status status, String longUrl) {
+        this.status = status;
+        this.longUrl = longUrl;
+    }
+
+    static ClickResult ok(String longUrl) {
+        return new ClickResult(Status.OK, longUrl);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    /** Target URL for {@link Status#OK}, otherwise null. */
+    public String getLongUrl() {
+        return longUrl;
+    }
+}
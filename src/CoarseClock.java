@@ -0,0 +1,34 @@
+// ==================== Coarse Clock ====================
+
+/**
+ * Wall clock cached in a volatile field and refreshed by a daemon thread every
+ * {@value #RESOLUTION_MILLIS} ms. Expiry checks on the redirect path read it instead
+ * of calling into the OS clock; deadlines are hours away, so the resolution is ample.
+ */
+final class CoarseClock {
+    static final long RESOLUTION_MILLIS = 10;
+
+    private static volatile long now = System.currentTimeMillis();
+
+    static {
+        Thread ticker = new Thread(() -> {
+            while (true) {
+                now = System.currentTimeMillis();
+                try {
+                    Thread.sleep(RESOLUTION_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "coarse-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private CoarseClock() {
+    }
+
+    public static long millis() {
+        return now;
+    }
+}
@@ -0,0 +1,208 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// ==================== Expiry Sweeper ====================
+
+/**
+ * Background reclamation of expired links for lazy expiry. No timers are kept per link.
+ * Readers treat a link as dead once its deadline has passed, and this sweeper frees the
+ * memory of expired links that nobody reads any more.
+ * <p>
+ * The sweeper runs {@value #CYCLES_PER_SECOND} cycles per second on a low-priority
+ * thread. A cycle walks the storage slots from a rotating cursor in slices of
+ * {@value #SLICE_SLOTS} slots, the unit of pause. It hands the expired links of each
+ * slice to the reclaimer. Like Redis active expiry, a cycle goes on with the next slice
+ * only while more than a quarter of the links in the last slice were expired and the
+ * cycle has CPU budget left. A mostly live store thus costs one slice per cycle, and a
+ * burst of expirations is reclaimed as fast as the budget allows.
+ */
+class ExpirySweeper {
+    static final int CYCLES_PER_SECOND = 10;
+    static final int SLICE_SLOTS = 1024;
+    /** 1% of one core. */
+    static final long DEFAULT_BUDGET_MICROS = 10_000;
+    // Keep sweeping while more than 1/STALE_RATIO of the links of a slice were expired
+    private static final int STALE_RATIO = 4;
+
+    private final LinkStorage storage;
+    private final Reclaimer reclaimer;
+    private final long cycleBudgetNanos;
+    private final Thread sweeper;
+    private final long[] candidates = new long[SLICE_SLOTS];
+    private volatile boolean running = true;
+    private int cursor;
+
+    // Written by the sweeper only
+    private volatile long cycles;
+    private volatile long scannedSlots;
+    private volatile long reclaimedLinks;
+    private volatile long lastCycleMicros;
+    private volatile long maxCycleMicros;
+    private volatile long maxSliceMicros;
+    private final LongAdder expiredOnRead = new LongAdder();
+
+    /**
+     * @param budgetMicrosPerSecond CPU time the sweeper may use per second of wall time
+     */
+    ExpirySweeper(LinkStorage storage, Reclaimer reclaimer, long budgetMicrosPerSecond) {
+        if (budgetMicrosPerSecond <= 0 || budgetMicrosPerSecond > TimeUnit.SECONDS.toMicros(1)) {
+            throw new IllegalArgumentException("budgetMicrosPerSecond must be in (0, 1000000]");
+        }
+        this.storage = storage;
+        this.reclaimer = reclaimer;
+        this.cycleBudgetNanos = TimeUnit.MICROSECONDS.toNanos(budgetMicrosPerSecond) / CYCLES_PER_SECOND;
+        this.sweeper = new Thread(this::sweepLoop, "expiry-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /** Starts the background cycles; {@link #sweep(long)} can also be driven by the caller. */
+    public void start() {
+        sweeper.start();
+    }
+
+    private void sweepLoop() {
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / CYCLES_PER_SECOND;
+        long next = System.nanoTime();
+        while (running) {
+            next += periodNanos;
+            try {
+                sweep(CoarseClock.millis());
+            } catch (RuntimeException e) {
+                System.out.println("Ошибка очистки просроченных ссылок: " + e.getMessage());
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            } else {
+                // Fell behind, e.g. after a long pause: do not catch up with back-to-back cycles
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    /** Runs one cycle for the time {@code nowMillis}. */
+    synchronized void sweep(long nowMillis) {
+        long start = System.nanoTime();
+        long scanned = 0;
+        long reclaimed = 0;
+        int slotCount = storage.slotCount();
+        while (slotCount > 0) {
+            long sliceStart = System.nanoTime();
+            if (cursor >= slotCount) {
+                cursor = 0;
+            }
+            int end = Math.min(cursor + SLICE_SLOTS, slotCount);
+            int live = 0;
+            int expired = 0;
+            for (int slot = cursor; slot < end; slot++) {
+                long code = storage.code(slot);
+                if (code == ShortCode.INVALID) {
+                    continue;
+                }
+                live++;
+                if (nowMillis > storage.expiryMillis(slot)) {
+                    candidates[expired++] = code;
+                }
+            }
+            scanned += end - cursor;
+            cursor = end;
+            if (expired > 0) {
+                reclaimed += reclaimer.reclaim(candidates, expired);
+            }
+            long now = System.nanoTime();
+            maxSliceMicros = Math.max(maxSliceMicros, TimeUnit.NANOSECONDS.toMicros(now - sliceStart));
+            if (expired * STALE_RATIO <= live || now - start >= cycleBudgetNanos || scanned >= slotCount) {
+                break;
+            }
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        cycles++;
+        scannedSlots += scanned;
+        reclaimedLinks += reclaimed;
+        lastCycleMicros = micros;
+        maxCycleMicros = Math.max(maxCycleMicros, micros);
+    }
+
+    /** Counts a link found expired, and removed, by a reader. */
+    public void expiredOnRead() {
+        expiredOnRead.increment();
+    }
+
+    public void close() {
+        running = false;
+        if (!sweeper.isAlive()) {
+            return;
+        }
+        LockSupport.unpark(sweeper);
+        try {
+            sweeper.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Metrics metrics() {
+        return new Metrics(cycles, scannedSlots, reclaimedLinks, expiredOnRead.sum(),
+                lastCycleMicros, maxCycleMicros, maxSliceMicros);
+    }
+
+    interface Reclaimer {
+        /** Removes the links of {@code codes[0..count)} that are still expired; returns how many. */
+        int reclaim(long[] codes, int count);
+    }
+
+    /** Point-in-time view of the sweep statistics. */
+    static final class Metrics {
+        private final long cycles;
+        private final long scannedSlots;
+        private final long reclaimedLinks;
+        private final long expiredOnRead;
+        private final long lastCycleMicros;
+        private final long maxCycleMicros;
+        private final long maxSliceMicros;
+
+        Metrics(long cycles, long scannedSlots, long reclaimedLinks, long expiredOnRead,
+                long lastCycleMicros, long maxCycleMicros, long maxSliceMicros) {
+            this.cycles = cycles;
+            this.scannedSlots = scannedSlots;
+            this.reclaimedLinks = reclaimedLinks;
+            this.expiredOnRead = expiredOnRead;
+            this.lastCycleMicros = lastCycleMicros;
+            this.maxCycleMicros = maxCycleMicros;
+            this.maxSliceMicros = maxSliceMicros;
+        }
+
+        public long getCycles() {
+            return cycles;
+        }
+
+        public long getScannedSlots() {
+            return scannedSlots;
+        }
+
+        /** Expired links removed by the sweeper. */
+        public long getReclaimedLinks() {
+            return reclaimedLinks;
+        }
+
+        /** Expired links removed by a click before the sweeper got to them. */
+        public long getExpiredOnRead() {
+            return expiredOnRead;
+        }
+
+        public long getLastCycleMicros() {
+            return lastCycleMicros;
+        }
+
+        public long getMaxCycleMicros() {
+            return maxCycleMicros;
+        }
+
+        /** Longest single slice, the upper bound of one sweeper pause. */
+        public long getMaxSliceMicros() {
+            return maxSliceMicros;
+        }
+    }
+}
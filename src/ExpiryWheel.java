@@ -0,0 +1,165 @@
+import java.util.function.LongUnaryOperator;
+
+// ==================== Expiry Wheel ====================
+
+/**
+ * Hierarchical hashed timing wheel for link expiry.
+ * <p>
+ * Each level has {@value #WHEEL_SIZE} buckets; a bucket on level {@code n} spans
+ * {@code 64^n} ticks. Entries are short codes kept in growable {@code long[]} buckets,
+ * so a pending expiry costs 8 bytes instead of a scheduled task. Deadlines are not
+ * stored: they are looked up when an entry is placed or cascaded.
+ * Insert is O(1); entries on upper levels are cascaded down when their bucket comes due,
+ * and a due level-0 bucket is handed to the listener as one batch.
+ * <p>
+ * Cancellation is lazy: entries are never searched for. An entry whose deadline lookup
+ * reports {@link #GONE} is dropped at its next cascade, and the listener re-validates
+ * each entry against the store when its bucket fires.
+ */
+class ExpiryWheel {
+    static final int WHEEL_BITS = 6;
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    /** Deadline lookup result for an entry whose link no longer exists. */
+    static final long GONE = Long.MIN_VALUE;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    private final long tickMillis;
+    private final LongUnaryOperator deadline;
+    private final BatchListener listener;
+    private final Bucket[][] levels;
+    private long currentTick;
+    private int size;
+
+    ExpiryWheel(long tickMillis, long startMillis, LongUnaryOperator deadline, BatchListener listener) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.deadline = deadline;
+        this.listener = listener;
+        this.currentTick = startMillis / tickMillis;
+        this.levels = new Bucket[LEVELS][WHEEL_SIZE];
+        for (Bucket[] level : levels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                level[i] = new Bucket();
+            }
+        }
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void add(long entry, long deadlineMillis) {
+        place(entry, deadlineMillis, currentTick + 1);
+        size++;
+    }
+
+    /** Adds {@code entries[i]} with deadline {@code deadlinesMillis[i]} for {@code i < count}, under one lock. */
+    public synchronized void addAll(long[] entries, long[] deadlinesMillis, int count) {
+        for (int i = 0; i < count; i++) {
+            place(entries[i], deadlinesMillis[i], currentTick + 1);
+        }
+        size += count;
+    }
+
+    /**
+     * Processes every tick up to {@code nowMillis}. Due entries of each tick are
+     * passed to the listener as one batch, outside the wheel lock.
+     */
+    public void advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        while (true) {
+            Bucket due;
+            synchronized (this) {
+                if (currentTick >= targetTick) {
+                    return;
+                }
+                due = processTick(currentTick + 1);
+                currentTick++;
+            }
+            if (due != null) {
+                listener.expire(due.items, due.count);
+            }
+        }
+    }
+
+    private Bucket processTick(long tick) {
+        // Cascade from the highest level whose boundary is crossed, so that
+        // entries land on lower levels before those are processed.
+        int topLevel = 0;
+        while (topLevel + 1 < LEVELS && (tick & ((1L << (WHEEL_BITS * (topLevel + 1))) - 1)) == 0) {
+            topLevel++;
+        }
+        for (int level = topLevel; level >= 1; level--) {
+            int index = (int) (tick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+            Bucket bucket = levels[level][index];
+            if (bucket.count == 0) {
+                continue;
+            }
+            levels[level][index] = new Bucket();
+            for (int i = 0; i < bucket.count; i++) {
+                long entry = bucket.items[i];
+                long deadlineMillis = deadline.applyAsLong(entry);
+                if (deadlineMillis == GONE) {
+                    size--;
+                } else {
+                    place(entry, deadlineMillis, tick);
+                }
+            }
+        }
+
+        int index = (int) tick & WHEEL_MASK;
+        Bucket bucket = levels[0][index];
+        if (bucket.count == 0) {
+            return null;
+        }
+        levels[0][index] = new Bucket();
+        size -= bucket.count;
+        return bucket;
+    }
+
+    /** Places an entry relative to {@code baseTick}, the next tick to be processed. */
+    private void place(long entry, long deadlineMillis, long baseTick) {
+        long dueTick = Math.max(ceilDiv(deadlineMillis, tickMillis), baseTick);
+        long delta = dueTick - baseTick;
+        int level = 0;
+        while (level + 1 < LEVELS && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        if (delta >= (1L << (WHEEL_BITS * LEVELS))) {
+            // Beyond the wheel horizon: park on the farthest top-level bucket, it is re-placed on cascade.
+            dueTick = baseTick + (1L << (WHEEL_BITS * LEVELS)) - 1;
+        }
+        levels[level][(int) (dueTick >>> (WHEEL_BITS * level)) & WHEEL_MASK].add(entry);
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    interface BatchListener {
+        /** Receives the due entries in {@code entries[0..count)}; the array is not reused by the wheel. */
+        void expire(long[] entries, int count);
+    }
+
+    private static final class Bucket {
+        private long[] items = new long[INITIAL_BUCKET_CAPACITY];
+        private int count;
+
+        void add(long entry) {
+            if (count == items.length) {
+                long[] grown = new long[items.length << 1];
+                System.arraycopy(items, 0, grown, 0, count);
+                items = grown;
+            }
+            items[count++] = entry;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// ==================== Heap Link Storage ====================
+
+/**
+ * {@link LinkStorage} that keeps one {@link ShortLink} object per slot. Slots live in
+ * fixed-size pages so the table grows without copying.
+ */
+class HeapLinkStorage implements LinkStorage {
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final SlotAllocator slots = new SlotAllocator();
+    private volatile AtomicReferenceArray<ShortLink>[] pages;
+
+    HeapLinkStorage() {
+        this.pages = newPages(1);
+        pages[0] = new AtomicReferenceArray<>(PAGE_SIZE);
+    }
+
+    public ShortLink get(int slot) {
+        AtomicReferenceArray<ShortLink>[] p = pages;
+        int page = slot >>> PAGE_BITS;
+        if (slot < 0 || page >= p.length) {
+            return null;
+        }
+        return p[page].get(slot & PAGE_MASK);
+    }
+
+    @Override
+    public int allocate(long code, String longUrl, UUID userId, int clickLimit, long creationMillis, long expiryMillis) {
+        ShortLink link = new ShortLink(code, longUrl, userId, clickLimit, 0,
+                creationMillis, expiryMillis);
+        int slot = slots.acquire();
+        pageFor(slot).set(slot & PAGE_MASK, link);
+        return slot;
+    }
+
+    @Override
+    public void release(int slot) {
+        pages[slot >>> PAGE_BITS].set(slot & PAGE_MASK, null);
+        slots.release(slot);
+    }
+
+    @Override
+    public long code(int slot) {
+        ShortLink link = get(slot);
+        return link == null ? ShortCode.INVALID : link.getCode();
+    }
+
+    @Override
+    public String longUrl(int slot) {
+        ShortLink link = get(slot);
+        return link == null ? null : link.getLongUrl();
+    }
+
+    @Override
+    public String userId(int slot) {
+        ShortLink link = get(slot);
+        return link == null ? null : link.getUserId();
+    }
+
+    @Override
+    public int clickLimit(int slot) {
+        ShortLink link = get(slot);
+        return link == null ? 0 : link.getClickLimit();
+    }
+
+    @Override
+    public int clickCount(int slot) {
+        ShortLink link = get(slot);
+        return link == null ? 0 : link.getClickCount();
+    }
+
+    @Override
+    public int tryClick(int slot, long code) {
+        // Each incarnation of a slot is a distinct object, so a stale slot can only hit a dead link
+        ShortLink link = get(slot);
+        return link == null || link.getCode() != code ? LINK_GONE : link.tryClick();
+    }
+
+    @Override
+    public boolean tryClaim(int slot, long code) {
+        ShortLink link = get(slot);
+        return link != null && link.getCode() == code && link.tryClaim();
+    }
+
+    @Override
+    public void restoreClicks(int slot, long code, int clickCount) {
+        ShortLink link = get(slot);
+        if (link != null && link.getCode() == code) {
+            link.restoreClicks(clickCount);
+        }
+    }
+
+    @Override
+    public long expiryMillis(int slot) {
+        // A released slot never looks expired, its clicks and claims fail instead
+        ShortLink link = get(slot);
+        return link == null ? Long.MAX_VALUE : link.getExpiryMillis();
+    }
+
+    @Override
+    public ShortLink view(int slot) {
+        return get(slot);
+    }
+
+    @Override
+    public int slotCount() {
+        return slots.highWater();
+    }
+
+    private AtomicReferenceArray<ShortLink> pageFor(int slot) {
+        int page = slot >>> PAGE_BITS;
+        AtomicReferenceArray<ShortLink>[] p = pages;
+        if (page < p.length) {
+            return p[page];
+        }
+        synchronized (this) {
+            p = pages;
+            if (page >= p.length) {
+                AtomicReferenceArray<ShortLink>[] grown = newPages(page + 1);
+                System.arraycopy(p, 0, grown, 0, p.length);
+                for (int i = p.length; i <= page; i++) {
+                    grown[i] = new AtomicReferenceArray<>(PAGE_SIZE);
+                }
+                pages = grown;
+                p = grown;
+            }
+            return p[page];
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<ShortLink>[] newPages(int length) {
+        return new AtomicReferenceArray[length];
+    }
+}
@@ -0,0 +1,497 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// ==================== Hot Link Cache ====================
+
+/**
+ * Bounded on-heap cache of the immutable part of popular links: slot, URL, click limit
+ * and expiry. A redirect of a cached link skips the index probe and, for off-heap
+ * storage, the URL copy and decode. Click counts are not cached. Every click still goes
+ * through {@link LinkStorage#tryClick}, which checks the code of the slot, so a stale
+ * entry can only produce a miss, never a wrong click or a broken limit. In front of the
+ * in-memory storages a hit saves about as much as the policy costs, so the cache is
+ * meant for a slower backing store.
+ * <p>
+ * The policy is W-TinyLFU, sized in bytes. New entries enter a small LRU window. An
+ * entry leaving the window competes with the victim of the main space, a segmented LRU
+ * of probation and protected parts. It is admitted only if a count-min sketch of recent
+ * access frequencies rates it higher. A one-time scan of cold links thus passes through
+ * the window without flushing the viral ones. The sketch uses 4-bit counters and halves
+ * them all after {@value #SAMPLE_FACTOR} accesses per entry it was sized for, so
+ * popularity ages.
+ * A miss only caches the link once the sketch has seen it before, so links read once
+ * never cost an entry.
+ * <p>
+ * Lookups probe an open-addressing table keyed by the primitive code, like
+ * {@link LinkIndex}, so neither a hit nor a miss allocates. The table is sized for the
+ * most entries the byte budget can hold and never grows; deletions leave tombstones,
+ * which are swept by rebuilding the table once they take a quarter of it. Lookups never
+ * lock. Writes to the table and policy updates (sketch, queues)
+ * take one lock, and never wait for it. A hit appends its entry to a striped, lossy read
+ * buffer, which is replayed into the policy by whichever thread fills a stripe and gets
+ * the lock. A miss that finds the lock taken is not cached. Both only lose bookkeeping
+ * under contention, and hot links are hit again right away.
+ */
+class HotLinkCache {
+    /** Estimated heap bytes of an entry besides its URL characters: node, String, table slots. */
+    static final int ENTRY_OVERHEAD = 160;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Entry[].class);
+    private static final Entry TOMBSTONE = new Entry();
+    private static final int SAMPLE_FACTOR = 10;
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int READ_BUFFER_SIZE = 64;
+
+    // Written under policyLock with release stores, read without it
+    private volatile Entry[] table;
+    private int entryCount;
+    private int tombstones;
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final Entry[] queues = {new Entry(), new Entry(), new Entry()};
+    private final long[] queueBytes = new long[3];
+    private final long maxBytes;
+    private final long windowMaxBytes;
+    private final long mainMaxBytes;
+    private final long protectedMaxBytes;
+
+    // Count-min sketch: 16 4-bit counters per long, 4 counters per key in one 64-byte block
+    private final long[] sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private int samples;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder skippedAccesses = new LongAdder();
+    private final ReadBuffer[] readBuffers;
+    // Guarded by policyLock
+    private long admitted;
+    private long rejected;
+    private long evicted;
+    private long invalidated;
+
+    HotLinkCache(long maxBytes) {
+        if (maxBytes < ENTRY_OVERHEAD * 100L) {
+            throw new IllegalArgumentException("maxBytes must hold at least 100 entries");
+        }
+        this.maxBytes = maxBytes;
+        this.windowMaxBytes = Math.max(ENTRY_OVERHEAD * 2L, maxBytes * WINDOW_PERCENT / 100);
+        this.mainMaxBytes = maxBytes - windowMaxBytes;
+        this.protectedMaxBytes = mainMaxBytes * PROTECTED_PERCENT / 100;
+        // At most half full with live entries, even if every URL were empty
+        long maxEntries = maxBytes / ENTRY_OVERHEAD + 1;
+        if (maxEntries > 1 << 28) {
+            throw new IllegalArgumentException("maxBytes too large");
+        }
+        this.table = new Entry[Integer.highestOneBit((int) maxEntries * 2 - 1) << 1];
+        for (Entry sentinel : queues) {
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+        }
+        // One sketch long per expected entry, assuming URLs of ~100 characters
+        long expectedEntries = Math.max(64, maxBytes / (ENTRY_OVERHEAD + 100));
+        this.sketch = new long[Integer.highestOneBit((int) Math.min(expectedEntries, 1 << 26) - 1) << 1];
+        this.sketchMask = (sketch.length >>> 3) - 1;
+        this.sampleSize = SAMPLE_FACTOR * sketch.length;
+        int stripes = Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.readBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /** Cached link for {@code code}, or null; records the access. */
+    Entry get(long code) {
+        Entry entry = find(code);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+        long position = buffer.written.getAndIncrement();
+        buffer.entries.lazySet((int) position & (READ_BUFFER_SIZE - 1), entry);
+        if ((position & (READ_BUFFER_SIZE - 1)) == READ_BUFFER_SIZE - 1 && policyLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        return entry;
+    }
+
+    /** Offers a link just read from the storage after a miss. */
+    void put(long code, int slot, String longUrl, int clickLimit, long expiryMillis) {
+        if (!policyLock.tryLock()) {
+            skippedAccesses.increment();
+            return;
+        }
+        try {
+            drainReadBuffers();
+            // Doorkeeper: the first miss of a link is only counted
+            if (increment(code) < 2) {
+                return;
+            }
+            if (find(code) != null) {
+                return;
+            }
+            Entry entry = new Entry(code, slot, longUrl, clickLimit, expiryMillis);
+            insert(entry);
+            link(WINDOW, entry);
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /** Replays the buffered hits into the sketch and the queues. */
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            long written = buffer.written.get();
+            long from = Math.max(buffer.drained, written - READ_BUFFER_SIZE);
+            for (long i = from; i < written; i++) {
+                Entry entry = buffer.entries.getAndSet((int) i & (READ_BUFFER_SIZE - 1), null);
+                if (entry != null && entry.queue >= 0) {
+                    increment(entry.code);
+                    onHit(entry);
+                }
+            }
+            skippedAccesses.add(from - buffer.drained);
+            buffer.drained = written;
+        }
+    }
+
+    /** Drops the entry of a deleted link, if cached. */
+    void invalidate(long code) {
+        if (find(code) == null) {
+            return;
+        }
+        policyLock.lock();
+        try {
+            Entry entry = find(code);
+            if (entry != null) {
+                remove(entry);
+                invalidated++;
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void onHit(Entry entry) {
+        if (entry.queue == PROBATION) {
+            unlink(entry);
+            link(PROTECTED, entry);
+            // Protected overflow goes back to probation, most recent first
+            while (queueBytes[PROTECTED] > protectedMaxBytes) {
+                Entry demoted = queues[PROTECTED].next;
+                unlink(demoted);
+                link(PROBATION, demoted);
+            }
+        } else {
+            int queue = entry.queue;
+            unlink(entry);
+            link(queue, entry);
+        }
+    }
+
+    /** Moves window overflow into the main space, which admits an entry only over a colder victim. */
+    private void evict() {
+        while (queueBytes[WINDOW] > windowMaxBytes) {
+            Entry candidate = queues[WINDOW].next;
+            unlink(candidate);
+            link(PROBATION, candidate);
+            while (queueBytes[PROBATION] + queueBytes[PROTECTED] > mainMaxBytes) {
+                Entry victim = queues[PROBATION].next;
+                if (victim == candidate) {
+                    // Only the candidate is left on probation: protected entries make room
+                    victim = queues[PROTECTED].next;
+                }
+                if (victim != queues[PROTECTED] && frequency(candidate.code) > frequency(victim.code)) {
+                    remove(victim);
+                    evicted++;
+                } else {
+                    remove(candidate);
+                    rejected++;
+                    candidate = null;
+                    break;
+                }
+            }
+            if (candidate != null) {
+                admitted++;
+            }
+        }
+    }
+
+    private long size() {
+        return queueBytes[WINDOW] + queueBytes[PROBATION] + queueBytes[PROTECTED];
+    }
+
+    private void remove(Entry entry) {
+        unlink(entry);
+        Entry[] t = table;
+        int mask = t.length - 1;
+        for (int i = index(entry.code, mask); ; i = (i + 1) & mask) {
+            if (t[i] == entry) {
+                SLOTS.setRelease(t, i, TOMBSTONE);
+                entryCount--;
+                tombstones++;
+                return;
+            }
+        }
+    }
+
+    private Entry find(long code) {
+        Entry[] t = table;
+        int mask = t.length - 1;
+        for (int i = index(code, mask); ; i = (i + 1) & mask) {
+            Entry entry = (Entry) SLOTS.getAcquire(t, i);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.code == code && entry != TOMBSTONE) {
+                return entry;
+            }
+        }
+    }
+
+    /** Adds an entry known to be absent; called under the policy lock. */
+    private void insert(Entry entry) {
+        Entry[] t = table;
+        if ((entryCount + tombstones + 1) * 4L > t.length * 3L) {
+            // Live entries fill at most half the table, so a sweep frees at least a quarter
+            Entry[] fresh = new Entry[t.length];
+            for (Entry live : t) {
+                if (live != null && live != TOMBSTONE) {
+                    place(fresh, live);
+                }
+            }
+            tombstones = 0;
+            table = fresh;
+            t = fresh;
+        }
+        int mask = t.length - 1;
+        int i = index(entry.code, mask);
+        while (t[i] != null && t[i] != TOMBSTONE) {
+            i = (i + 1) & mask;
+        }
+        if (t[i] == TOMBSTONE) {
+            tombstones--;
+        }
+        SLOTS.setRelease(t, i, entry);
+        entryCount++;
+    }
+
+    private static void place(Entry[] t, Entry entry) {
+        int mask = t.length - 1;
+        int i = index(entry.code, mask);
+        while (t[i] != null) {
+            i = (i + 1) & mask;
+        }
+        t[i] = entry;
+    }
+
+    private static int index(long code, int mask) {
+        return (int) (spread(code) >>> 32) & mask;
+    }
+
+    private void link(int queue, Entry entry) {
+        Entry sentinel = queues[queue];
+        entry.prev = sentinel.prev;
+        entry.next = sentinel;
+        sentinel.prev.next = entry;
+        sentinel.prev = entry;
+        entry.queue = queue;
+        queueBytes[queue] += entry.weight;
+    }
+
+    private void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+        queueBytes[entry.queue] -= entry.weight;
+        entry.queue = -1;
+    }
+
+    /** Counts an access of {@code code}; returns its estimated frequency including this one. */
+    private int increment(long code) {
+        long h = spread(code);
+        int block = block(h);
+        int min = 0xF;
+        for (int i = 0; i < 4; i++) {
+            int index = block + (i << 1) + (int) ((h >>> (32 + i)) & 1);
+            int shift = counterShift(h, i);
+            int count = (int) (sketch[index] >>> shift) & 0xF;
+            if (count != 0xF) {
+                sketch[index] += 1L << shift;
+                count++;
+            }
+            min = Math.min(min, count);
+        }
+        if (++samples == sampleSize) {
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] = (sketch[i] >>> 1) & 0x7777777777777777L;
+            }
+            samples /= 2;
+        }
+        return min;
+    }
+
+    private int frequency(long code) {
+        long h = spread(code);
+        int block = block(h);
+        int min = 0xF;
+        for (int i = 0; i < 4; i++) {
+            int index = block + (i << 1) + (int) ((h >>> (32 + i)) & 1);
+            min = Math.min(min, (int) (sketch[index] >>> counterShift(h, i)) & 0xF);
+        }
+        return min;
+    }
+
+    /** First of the 8 longs, one cache line, that hold the 4 counters of a key. */
+    private int block(long h) {
+        return ((int) h & sketchMask) << 3;
+    }
+
+    private static int counterShift(long h, int i) {
+        return (int) ((h >>> (40 + (i << 2))) & 0xF) << 2;
+    }
+
+    private static long spread(long code) {
+        long h = code * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+
+    public Metrics metrics() {
+        policyLock.lock();
+        try {
+            drainReadBuffers();
+            return new Metrics(hits.sum(), misses.sum(), skippedAccesses.sum(), admitted, rejected, evicted,
+                    invalidated, entryCount, size(), maxBytes);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /** Hits of the threads of one stripe, in a ring that overwrites entries not drained in time. */
+    private static final class ReadBuffer {
+        final AtomicLong written = new AtomicLong();
+        final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        // Guarded by policyLock
+        long drained;
+    }
+
+    /** Immutable part of a link, plus the policy links guarded by the cache lock. */
+    static final class Entry {
+        final long code;
+        final int slot;
+        final String longUrl;
+        final int clickLimit;
+        final long expiryMillis;
+        final int weight;
+        int queue = -1;
+        Entry prev;
+        Entry next;
+
+        private Entry() {
+            this(ShortCode.INVALID, -1, "", 0, 0);
+        }
+
+        Entry(long code, int slot, String longUrl, int clickLimit, long expiryMillis) {
+            this.code = code;
+            this.slot = slot;
+            this.longUrl = longUrl;
+            this.clickLimit = clickLimit;
+            this.expiryMillis = expiryMillis;
+            this.weight = ENTRY_OVERHEAD + longUrl.length();
+        }
+    }
+
+    /** Point-in-time view of the cache statistics. */
+    static final class Metrics {
+        private final long hits;
+        private final long misses;
+        private final long skippedAccesses;
+        private final long admitted;
+        private final long rejected;
+        private final long evicted;
+        private final long invalidated;
+        private final int entries;
+        private final long bytes;
+        private final long maxBytes;
+
+        Metrics(long hits, long misses, long skippedAccesses, long admitted, long rejected, long evicted,
+                long invalidated, int entries, long bytes, long maxBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.skippedAccesses = skippedAccesses;
+            this.admitted = admitted;
+            this.rejected = rejected;
+            this.evicted = evicted;
+            this.invalidated = invalidated;
+            this.entries = entries;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        /** Hits and misses left out of the policy because the lock was busy or the read buffer full. */
+        public long getSkippedAccesses() {
+            return skippedAccesses;
+        }
+
+        /** Window entries admitted into the main space. */
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        /** Window entries turned away as colder than the main-space victim. */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /** Main-space entries evicted for a hotter newcomer. */
+        public long getEvicted() {
+            return evicted;
+        }
+
+        /** Entries dropped because their link was deleted. */
+        public long getInvalidated() {
+            return invalidated;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        /** Estimated heap use of the entries. */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+    }
+}
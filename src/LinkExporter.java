@@ -0,0 +1,350 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+// ==================== Link Exporter ====================
+
+/**
+ * Streaming export of the links of a {@link ShortLinkService} to JSONL or CSV, plain or
+ * gzip-compressed.
+ * <p>
+ * Links are visited in place through {@link ShortLinkService#forEachLink}. Each row is
+ * encoded straight into one reusable {@value #BUFFER_SIZE}-byte buffer, with no String
+ * per row. The buffer is written to the file channel whenever it fills, or to a gzip
+ * stream over the channel. Memory use is the same for ten links and ten million.
+ * <p>
+ * Rows carry the code, URL, owner, click limit, click count, and creation and expiry
+ * time in epoch millis:
+ * <pre>
+ * JSONL  {"code":..,"url":..,"owner":..,"limit":..,"clicks":..,"created":..,"expires":..}
+ * CSV    code,url,owner,limit,clicks,created,expires   with a header line
+ * </pre>
+ * JSONL exports can be read back by {@link LinkImporter}, which ignores the extra fields.
+ */
+final class LinkExporter {
+    static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CSV_HEADER = "code,url,owner,limit,clicks,created,expires\n".getBytes(StandardCharsets.US_ASCII);
+
+    enum Format { JSONL, CSV }
+
+    private final ShortLinkService service;
+
+    LinkExporter(ShortLinkService service) {
+        this.service = service;
+    }
+
+    /** Exports every live link; the format and compression follow the file name, e.g. {@code links.csv.gz}. */
+    static Result exportFile(ShortLinkService service, Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) {
+            name = name.substring(0, name.length() - ".gz".length());
+        }
+        return new LinkExporter(service).export(file, name.endsWith(".csv") ? Format.CSV : Format.JSONL, gzip);
+    }
+
+    /** Exports every live link. */
+    Result export(Path file, Format format, boolean gzip) throws IOException {
+        return export(file, format, gzip, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Exports the live links of {@code userId} (all users when null) that expire in
+     * {@code [expiresFrom, expiresTo)}, epoch millis.
+     */
+    Result export(Path file, Format format, boolean gzip, String userId, long expiresFrom, long expiresTo)
+            throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             RowWriter writer = new RowWriter(channel, gzip)) {
+            if (format == Format.CSV) {
+                writer.put(CSV_HEADER);
+            }
+            try {
+                service.forEachLink(userId, link -> {
+                    long expiry = link.getExpiryMillis();
+                    if (expiry >= expiresFrom && expiry < expiresTo) {
+                        if (format == Format.CSV) {
+                            writer.csvRow(link);
+                        } else {
+                            writer.jsonRow(link);
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.finish();
+            return new Result(writer.rows, writer.bytes, channel.size(), System.nanoTime() - start);
+        }
+    }
+
+    /** Encodes rows into the buffer and drains it to the channel or the gzip stream. */
+    private static final class RowWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final GZIPOutputStream gzip;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte[] array = buffer.array();
+        private final byte[] digits = new byte[20];
+        private int pos;
+        private long rows;
+        private long bytes;
+
+        RowWriter(FileChannel channel, boolean gzip) throws IOException {
+            this.channel = channel;
+            this.gzip = gzip ? new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE) : null;
+        }
+
+        void jsonRow(ShortLink link) {
+            put("{\"code\":\"");
+            code(link.getCode());
+            put("\",\"url\":\"");
+            jsonString(link.getLongUrl());
+            put("\",\"owner\":\"");
+            uuid(link.getUserIdMsb(), link.getUserIdLsb());
+            put("\",\"limit\":");
+            number(link.getClickLimit());
+            put(",\"clicks\":");
+            number(link.getClickCount());
+            put(",\"created\":");
+            number(link.getCreationMillis());
+            put(",\"expires\":");
+            number(link.getExpiryMillis());
+            put("}\n");
+            rows++;
+        }
+
+        void csvRow(ShortLink link) {
+            code(link.getCode());
+            put(',');
+            csvString(link.getLongUrl());
+            put(',');
+            uuid(link.getUserIdMsb(), link.getUserIdLsb());
+            put(',');
+            number(link.getClickLimit());
+            put(',');
+            number(link.getClickCount());
+            put(',');
+            number(link.getCreationMillis());
+            put(',');
+            number(link.getExpiryMillis());
+            put('\n');
+            rows++;
+        }
+
+        private void code(long code) {
+            ensure(ShortCode.LENGTH);
+            ShortCode.decode(code, array, pos);
+            pos += ShortCode.LENGTH;
+        }
+
+        private void uuid(long msb, long lsb) {
+            hex(msb >>> 32, 8);
+            put('-');
+            hex(msb >>> 16, 4);
+            put('-');
+            hex(msb, 4);
+            put('-');
+            hex(lsb >>> 48, 4);
+            put('-');
+            hex(lsb, 12);
+        }
+
+        private void hex(long value, int digitCount) {
+            ensure(digitCount);
+            for (int i = digitCount - 1; i >= 0; i--) {
+                array[pos + i] = HEX[(int) (value & 0xF)];
+                value >>>= 4;
+            }
+            pos += digitCount;
+        }
+
+        private void number(long value) {
+            if (value < 0) {
+                put('-');
+                if (value == Long.MIN_VALUE) {
+                    put("9223372036854775808");
+                    return;
+                }
+                value = -value;
+            }
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            ensure(count);
+            while (count > 0) {
+                array[pos++] = digits[--count];
+            }
+        }
+
+        private void jsonString(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    put('\\');
+                    put(c);
+                } else if (c < 0x20) {
+                    put("\\u00");
+                    hex(c, 2);
+                } else {
+                    i = utf8(s, i);
+                }
+            }
+        }
+
+        private void csvString(String s) {
+            boolean quote = false;
+            for (int i = 0; i < s.length() && !quote; i++) {
+                char c = s.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (quote) {
+                put('"');
+            }
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) == '"') {
+                    put('"');
+                }
+                i = utf8(s, i);
+            }
+            if (quote) {
+                put('"');
+            }
+        }
+
+        /** Writes the character at {@code i} as UTF-8; returns the index of its last char. */
+        private int utf8(String s, int i) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                put(c);
+            } else if (c < 0x800) {
+                put(0xC0 | (c >> 6));
+                put(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                put(0xF0 | (cp >> 18));
+                put(0x80 | ((cp >> 12) & 0x3F));
+                put(0x80 | ((cp >> 6) & 0x3F));
+                put(0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, encoded as '?' like String.getBytes does
+                put('?');
+            } else {
+                put(0xE0 | (c >> 12));
+                put(0x80 | ((c >> 6) & 0x3F));
+                put(0x80 | (c & 0x3F));
+            }
+            return i;
+        }
+
+        private void put(String ascii) {
+            for (int i = 0; i < ascii.length(); i++) {
+                put(ascii.charAt(i));
+            }
+        }
+
+        void put(byte[] data) {
+            for (byte b : data) {
+                put(b);
+            }
+        }
+
+        private void put(int b) {
+            if (pos == array.length) {
+                drain();
+            }
+            array[pos++] = (byte) b;
+        }
+
+        private void ensure(int count) {
+            if (array.length - pos < count) {
+                drain();
+            }
+        }
+
+        private void drain() {
+            try {
+                if (gzip != null) {
+                    gzip.write(array, 0, pos);
+                } else {
+                    buffer.clear().limit(pos);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            bytes += pos;
+            pos = 0;
+        }
+
+        /** Writes out the buffer and, for gzip, the trailer. */
+        void finish() throws IOException {
+            try {
+                drain();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (gzip != null) {
+                gzip.finish();
+            }
+        }
+
+        /** Releases the compressor; this also closes the channel. */
+        @Override
+        public void close() throws IOException {
+            if (gzip != null) {
+                gzip.close();
+            }
+        }
+    }
+
+    /** Outcome of an export. */
+    static final class Result {
+        private final long rows;
+        private final long bytes;
+        private final long fileBytes;
+        private final long elapsedNanos;
+
+        Result(long rows, long bytes, long fileBytes, long elapsedNanos) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.fileBytes = fileBytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /** Encoded size before compression. */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getFileBytes() {
+            return fileBytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+    }
+}
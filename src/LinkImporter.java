@@ -0,0 +1,621 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// ==================== Link Importer ====================
+
+/**
+ * Bulk import of links from a CSV or JSONL file into {@link ShortLinkService#createShortLinks}.
+ * <p>
+ * The file is split into chunks of about {@value #CHUNK_SIZE} bytes, by default, that end on line
+ * boundaries. Each chunk is memory-mapped and parsed by its own task on a {@link ForkJoinPool}.
+ * Lines are copied into a per-task scratch array and parsed from bytes. Only the URL and
+ * owner of a row become Strings, and consecutive rows of the same owner share one.
+ * Parsed rows are handed over in batches of {@value #BATCH_SIZE}.
+ * <p>
+ * Rows, one per line:
+ * <pre>
+ * CSV    url,owner,limit[,ttl]            optional header line starting with "url",
+ *                                         quoting as in RFC 4180 without line breaks in fields
+ * JSONL  {"url": .., "owner": .., "limit": .., "ttl": ..}
+ * </pre>
+ * The owner is a UUID and the limit is positive. The TTL has the form of the console
+ * prompt: a number with the unit m, h or d, where a bare number means hours. A missing
+ * TTL means {@link ShortLinkService#DEFAULT_TTL}. Rows that fail to parse or validate are
+ * counted as rejected and skipped. Links from different chunks are created in no
+ * particular order.
+ */
+final class LinkImporter {
+    static final int CHUNK_SIZE = 8 << 20;
+    static final int BATCH_SIZE = 10_000;
+    private static final int MAX_REJECTION_SAMPLES = 10;
+
+    enum Format { CSV, JSONL }
+
+    private final ShortLinkService service;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    LinkImporter(ShortLinkService service) {
+        this(service, ForkJoinPool.commonPool(), CHUNK_SIZE);
+    }
+
+    LinkImporter(ShortLinkService service, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.service = service;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Imports {@code file} into {@code service} on the common pool; the format follows the extension. */
+    static Result importFile(ShortLinkService service, Path file) throws IOException {
+        return new LinkImporter(service).run(file, formatOf(file));
+    }
+
+    /** JSONL for {@code .jsonl} and {@code .json} files, CSV otherwise. */
+    static Format formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jsonl") || name.endsWith(".json") ? Format.JSONL : Format.CSV;
+    }
+
+    Result run(Path file, Format format) throws IOException {
+        long start = System.nanoTime();
+        LongAdder imported = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        ConcurrentLinkedQueue<String> samples = new ConcurrentLinkedQueue<>();
+        AtomicInteger sampleCount = new AtomicInteger();
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            List<Callable<Void>> tasks = new ArrayList<>();
+            long chunkStart = 0;
+            while (chunkStart < size) {
+                long chunkEnd = lineEnd(channel, Math.min(chunkStart + chunkSize, size), size);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+                long offset = chunkStart;
+                boolean first = chunkStart == 0;
+                tasks.add(() -> {
+                    new ChunkParser(format, chunk, offset, first, imported, rejected, samples, sampleCount).parse();
+                    return null;
+                });
+                chunkStart = chunkEnd;
+            }
+            for (Future<Void> task : pool.invokeAll(tasks)) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Ошибка импорта: " + e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Импорт прерван", e);
+                }
+            }
+        }
+        return new Result(imported.sum(), rejected.sum(), size, System.nanoTime() - start, List.copyOf(samples));
+    }
+
+    /** Position just after the first line break at or after {@code from}, or {@code size}. */
+    private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = from;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /** Parses one chunk and creates its links; not thread-safe, one per task. */
+    private final class ChunkParser {
+        private final Format format;
+        private final ByteBuffer chunk;
+        private final long offset;
+        private final boolean first;
+        private final LongAdder imported;
+        private final LongAdder rejected;
+        private final ConcurrentLinkedQueue<String> samples;
+        private final AtomicInteger sampleCount;
+        private final List<LinkRequest> batch = new ArrayList<>();
+        private byte[] line = new byte[1024];
+        private byte[] text = new byte[1024];
+        private int textLength;
+        private int pos;
+        private int end;
+        // Owner of the previous row, reused while rows of one owner follow each other
+        private byte[] ownerBytes = new byte[0];
+        private String owner;
+
+        ChunkParser(Format format, ByteBuffer chunk, long offset, boolean first, LongAdder imported,
+                    LongAdder rejected, ConcurrentLinkedQueue<String> samples, AtomicInteger sampleCount) {
+            this.format = format;
+            this.chunk = chunk;
+            this.offset = offset;
+            this.first = first;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.samples = samples;
+            this.sampleCount = sampleCount;
+        }
+
+        void parse() {
+            int limit = chunk.limit();
+            int lineStart = 0;
+            boolean header = first && format == Format.CSV;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && chunk.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int length = lineEnd - lineStart;
+                if (length > 0 && chunk.get(lineEnd - 1) == '\r') {
+                    length--;
+                }
+                if (line.length < length) {
+                    line = new byte[Math.max(length, line.length << 1)];
+                }
+                chunk.get(lineStart, line, 0, length);
+                pos = 0;
+                end = length;
+                if (header && isHeader()) {
+                    header = false;
+                } else if (!isBlank()) {
+                    header = false;
+                    try {
+                        batch.add(format == Format.CSV ? parseCsv() : parseJson());
+                    } catch (IllegalArgumentException e) {
+                        reject(offset + lineStart, e.getMessage());
+                    }
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    flush();
+                }
+                lineStart = lineEnd + 1;
+            }
+            flush();
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                service.createShortLinks(batch);
+                imported.add(batch.size());
+            } catch (RuntimeException e) {
+                // Rows are validated while parsed, so this is a failure of the service itself
+                rejected.add(batch.size());
+                sample("пакет из " + batch.size() + " строк: " + e.getMessage());
+            }
+            batch.clear();
+        }
+
+        private void reject(long position, String reason) {
+            rejected.increment();
+            sample("позиция " + position + ": " + reason);
+        }
+
+        private void sample(String message) {
+            if (sampleCount.incrementAndGet() <= MAX_REJECTION_SAMPLES) {
+                samples.add(message);
+            }
+        }
+
+        private boolean isHeader() {
+            return end >= 3 && (line[0] | 0x20) == 'u' && (line[1] | 0x20) == 'r' && (line[2] | 0x20) == 'l';
+        }
+
+        private boolean isBlank() {
+            for (int i = 0; i < end; i++) {
+                if (line[i] != ' ' && line[i] != '\t') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // ---- CSV ----
+
+        private LinkRequest parseCsv() {
+            readCsvField();
+            String url = string();
+            expect(',');
+            readCsvField();
+            String userId = ownerOf();
+            expect(',');
+            readCsvField();
+            int limit = parseLimit();
+            Duration ttl = ShortLinkService.DEFAULT_TTL;
+            if (pos < end) {
+                expect(',');
+                readCsvField();
+                if (textLength > 0) {
+                    ttl = parseTtl();
+                }
+            }
+            if (pos < end) {
+                throw new IllegalArgumentException("лишние поля");
+            }
+            return new LinkRequest(url, userId, limit, ttl);
+        }
+
+        /** Reads the field at {@code pos} into {@code text}, unquoting it. */
+        private void readCsvField() {
+            textLength = 0;
+            if (pos < end && line[pos] == '"') {
+                pos++;
+                while (true) {
+                    if (pos >= end) {
+                        throw new IllegalArgumentException("незакрытая кавычка");
+                    }
+                    byte b = line[pos++];
+                    if (b == '"') {
+                        if (pos < end && line[pos] == '"') {
+                            pos++;
+                        } else {
+                            return;
+                        }
+                    }
+                    append(b);
+                }
+            }
+            int start = pos;
+            while (pos < end && line[pos] != ',') {
+                pos++;
+            }
+            int from = start;
+            int to = pos;
+            while (from < to && line[from] == ' ') {
+                from++;
+            }
+            while (to > from && line[to - 1] == ' ') {
+                to--;
+            }
+            for (int i = from; i < to; i++) {
+                append(line[i]);
+            }
+        }
+
+        private void expect(char c) {
+            if (pos >= end || line[pos] != c) {
+                throw new IllegalArgumentException("ожидался символ '" + c + "'");
+            }
+            pos++;
+        }
+
+        // ---- JSONL ----
+
+        private LinkRequest parseJson() {
+            String url = null;
+            String userId = null;
+            int limit = 0;
+            Duration ttl = ShortLinkService.DEFAULT_TTL;
+            skipSpaces();
+            expect('{');
+            skipSpaces();
+            if (pos < end && line[pos] == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    skipSpaces();
+                    readJsonString();
+                    String key = new String(text, 0, textLength, StandardCharsets.UTF_8);
+                    skipSpaces();
+                    expect(':');
+                    skipSpaces();
+                    switch (key) {
+                        case "url":
+                            readJsonString();
+                            url = string();
+                            break;
+                        case "owner":
+                        case "userId":
+                            readJsonString();
+                            userId = ownerOf();
+                            break;
+                        case "limit":
+                        case "clickLimit":
+                            readJsonScalar();
+                            limit = parseLimit();
+                            break;
+                        case "ttl":
+                            readJsonScalar();
+                            ttl = parseTtl();
+                            break;
+                        default:
+                            skipJsonValue();
+                    }
+                    skipSpaces();
+                    if (pos < end && line[pos] == ',') {
+                        pos++;
+                        continue;
+                    }
+                    expect('}');
+                    break;
+                }
+            }
+            skipSpaces();
+            if (pos < end) {
+                throw new IllegalArgumentException("лишние символы после объекта");
+            }
+            if (url == null || userId == null || limit == 0) {
+                throw new IllegalArgumentException("нужны поля url, owner и limit");
+            }
+            return new LinkRequest(url, userId, limit, ttl);
+        }
+
+        /** Reads a JSON string at {@code pos} into {@code text}, resolving escapes. */
+        private void readJsonString() {
+            expect('"');
+            textLength = 0;
+            while (true) {
+                if (pos >= end) {
+                    throw new IllegalArgumentException("незакрытая строка");
+                }
+                byte b = line[pos++];
+                if (b == '"') {
+                    return;
+                }
+                if (b != '\\') {
+                    append(b);
+                    continue;
+                }
+                if (pos >= end) {
+                    throw new IllegalArgumentException("незакрытая строка");
+                }
+                byte escape = line[pos++];
+                switch (escape) {
+                    case 'n':
+                        append((byte) '\n');
+                        break;
+                    case 't':
+                        append((byte) '\t');
+                        break;
+                    case 'r':
+                        append((byte) '\r');
+                        break;
+                    case 'b':
+                        append((byte) '\b');
+                        break;
+                    case 'f':
+                        append((byte) '\f');
+                        break;
+                    case 'u':
+                        appendCodeUnit();
+                        break;
+                    default:
+                        // \" \\ \/
+                        append(escape);
+                }
+            }
+        }
+
+        /** Appends a {@code \\uXXXX} escape as UTF-8; surrogate pairs are rejected. */
+        private void appendCodeUnit() {
+            if (pos + 4 > end) {
+                throw new IllegalArgumentException("некорректная escape-последовательность");
+            }
+            int c = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(line[pos++], 16);
+                if (digit < 0) {
+                    throw new IllegalArgumentException("некорректная escape-последовательность");
+                }
+                c = (c << 4) | digit;
+            }
+            if (Character.isSurrogate((char) c)) {
+                throw new IllegalArgumentException("суррогатные пары не поддерживаются");
+            }
+            byte[] utf8 = String.valueOf((char) c).getBytes(StandardCharsets.UTF_8);
+            for (byte b : utf8) {
+                append(b);
+            }
+        }
+
+        /** Reads a number, or a string holding one, into {@code text}. */
+        private void readJsonScalar() {
+            if (pos < end && line[pos] == '"') {
+                readJsonString();
+                return;
+            }
+            textLength = 0;
+            while (pos < end && line[pos] != ',' && line[pos] != '}' && line[pos] != ' ') {
+                append(line[pos++]);
+            }
+        }
+
+        private void skipJsonValue() {
+            int depth = 0;
+            while (pos < end) {
+                byte b = line[pos];
+                if (b == '"') {
+                    readJsonString();
+                    if (depth == 0) {
+                        return;
+                    }
+                    continue;
+                }
+                if (depth == 0 && (b == ',' || b == '}')) {
+                    return;
+                }
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                }
+                pos++;
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < end && (line[pos] == ' ' || line[pos] == '\t')) {
+                pos++;
+            }
+        }
+
+        // ---- Fields ----
+
+        private void append(byte b) {
+            if (textLength == text.length) {
+                byte[] grown = new byte[text.length << 1];
+                System.arraycopy(text, 0, grown, 0, textLength);
+                text = grown;
+            }
+            text[textLength++] = b;
+        }
+
+        private String string() {
+            if (textLength == 0) {
+                throw new IllegalArgumentException("пустой URL");
+            }
+            // Same rule as the service, checked here so that only this row is rejected
+            for (int i = 0; i < textLength; i++) {
+                if ((text[i] & 0xFF) < ' ' && text[i] != '\t' || text[i] == 0x7F) {
+                    throw new IllegalArgumentException("управляющие символы в URL");
+                }
+            }
+            return new String(text, 0, textLength, StandardCharsets.UTF_8);
+        }
+
+        /** The owner in {@code text}, shared with the previous row when equal. */
+        private String ownerOf() {
+            if (owner != null && ownerBytes.length == textLength
+                    && Arrays.equals(ownerBytes, 0, textLength, text, 0, textLength)) {
+                return owner;
+            }
+            String parsed;
+            try {
+                parsed = ShortLinkService.canonicalUserId(new String(text, 0, textLength, StandardCharsets.US_ASCII));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("владелец не UUID");
+            }
+            ownerBytes = Arrays.copyOf(text, textLength);
+            owner = parsed;
+            return owner;
+        }
+
+        private int parseLimit() {
+            long value = parseDigits(textLength);
+            if (value <= 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("некорректный лимит");
+            }
+            return (int) value;
+        }
+
+        /** Number with an optional unit m, h or d; a bare number means hours, as in the console. */
+        private Duration parseTtl() {
+            if (textLength == 0) {
+                throw new IllegalArgumentException("некорректное время жизни");
+            }
+            byte unit = text[textLength - 1];
+            boolean bare = unit >= '0' && unit <= '9';
+            long value = parseDigits(bare ? textLength : textLength - 1);
+            Duration ttl;
+            switch (bare ? 'h' : Character.toLowerCase((char) unit)) {
+                case 'm':
+                    ttl = Duration.ofMinutes(value);
+                    break;
+                case 'h':
+                    ttl = Duration.ofHours(value);
+                    break;
+                case 'd':
+                    ttl = Duration.ofDays(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("некорректное время жизни");
+            }
+            if (ttl.isZero() || ttl.compareTo(ShortLinkService.MAX_TTL) > 0) {
+                throw new IllegalArgumentException("время жизни вне допустимого диапазона");
+            }
+            return ttl;
+        }
+
+        /** Non-negative decimal in {@code text[0..length)}, capped so that it cannot overflow. */
+        private long parseDigits(int length) {
+            if (length == 0 || length > 12) {
+                throw new IllegalArgumentException("некорректное число");
+            }
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                byte b = text[i];
+                if (b < '0' || b > '9') {
+                    throw new IllegalArgumentException("некорректное число");
+                }
+                value = value * 10 + (b - '0');
+            }
+            return value;
+        }
+    }
+
+    /** Outcome of an import. */
+    static final class Result {
+        private final long imported;
+        private final long rejected;
+        private final long bytes;
+        private final long elapsedNanos;
+        private final List<String> rejectionSamples;
+
+        Result(long imported, long rejected, long bytes, long elapsedNanos, List<String> rejectionSamples) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.rejectionSamples = rejectionSamples;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        public double getLinksPerSecond() {
+            return elapsedNanos == 0 ? 0 : imported * 1e9 / elapsedNanos;
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos / (1 << 20);
+        }
+
+        /** Reasons for the first few rejected rows, with their byte position in the file. */
+        public List<String> getRejectionSamples() {
+            return rejectionSamples;
+        }
+    }
+}
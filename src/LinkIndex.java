@@ -0,0 +1,534 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+// ==================== Link Index ====================
+
+/**
+ * Concurrent open-addressing hash index from a {@link ShortCode} value to a slot
+ * of the link storage. Keys and slots live in two parallel primitive arrays, so an
+ * entry costs 12 bytes at full load instead of a map node, a String and its byte[].
+ * <p>
+ * The index is split into segments. Writers lock a single segment; readers never lock
+ * and probe the current table of the segment with acquire loads. A table cell, once
+ * written, never holds another key: removals leave a tombstone and cells are only
+ * recycled by a rehash into a fresh table, which is then published as a whole.
+ * Lookups are therefore weakly consistent and a slot returned by {@link #get(long)}
+ * may already have been released; callers validate the record behind it.
+ * <p>
+ * Optionally, every table carries a cuckoo filter of its live keys: buckets of four
+ * 16-bit fingerprints packed into one long, two candidate buckets per key. A lookup checks
+ * the filter first, and a key in neither bucket is absent, with no probe of the key
+ * array. Unknown codes from scanners are thus rejected after two reads of an array a
+ * quarter the size of the keys. The false-positive rate is about {@code 8 * load / 65536},
+ * at most 0.01%. The filter is written under the segment lock like the keys. A key's
+ * fingerprint goes in before the key and comes out after it. Relocations copy a
+ * fingerprint to its new lane before freeing the old one. A concurrent reader therefore
+ * never misses a key that the key array holds. The filter is rebuilt with every rehash.
+ */
+class LinkIndex {
+    static final int NOT_FOUND = -1;
+
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final int DEFAULT_SEGMENTS = 64;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    private static final float MAX_LOAD = 0.75f;
+    // Cuckoo filter: 4 lanes of 16 bits per bucket, relocation search bounds
+    private static final long LANES = 0x0001000100010001L;
+    private static final long LANE_HIGH_BITS = 0x8000800080008000L;
+    private static final int MAX_PATH = 5;
+    private static final int MAX_SEARCH_NODES = 1024;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final boolean filtered;
+    private final LongAdder filterRejections = new LongAdder();
+    private final LongAdder filterFalsePositives = new LongAdder();
+
+    LinkIndex() {
+        this(false);
+    }
+
+    LinkIndex(boolean filtered) {
+        this(DEFAULT_SEGMENTS, 0, filtered);
+    }
+
+    LinkIndex(int segmentCount, long expectedEntries) {
+        this(segmentCount, expectedEntries, false);
+    }
+
+    /**
+     * @param segmentCount    number of write stripes, rounded up to a power of two
+     * @param expectedEntries entries to presize for, avoiding rehashes during bulk loads
+     * @param filtered        whether lookups go through a cuckoo filter of the keys first
+     */
+    LinkIndex(int segmentCount, long expectedEntries, boolean filtered) {
+        this.filtered = filtered;
+        int count = segmentCount <= 1 ? 1 : Integer.highestOneBit(segmentCount - 1) << 1;
+        this.segments = new Segment[count];
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+        int perSegment = (int) Math.min(1 << 30, expectedEntries / count + 1);
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(tableCapacityFor(perSegment), filtered);
+        }
+    }
+
+    public int get(long code) {
+        long h = hash(code);
+        Table table = segmentFor(h).table;
+        if (table.filter != null && !table.mightContain(h)) {
+            filterRejections.increment();
+            return NOT_FOUND;
+        }
+        long key = code + 1;
+        int mask = table.keys.length - 1;
+        for (int i = (int) h & mask; ; i = (i + 1) & mask) {
+            long k = (long) KEYS.getAcquire(table.keys, i);
+            if (k == key) {
+                return table.slots[i];
+            }
+            if (k == EMPTY) {
+                if (table.filter != null) {
+                    filterFalsePositives.increment();
+                }
+                return NOT_FOUND;
+            }
+        }
+    }
+
+    /** Maps {@code code} to {@code slot}; returns the previous slot or {@link #NOT_FOUND}. */
+    public int put(long code, int slot) {
+        checkCode(code);
+        long h = hash(code);
+        Segment segment = segmentFor(h);
+        synchronized (segment) {
+            return segment.put(h, code + 1, slot);
+        }
+    }
+
+    /**
+     * Maps {@code codes[i]} to {@code slots[i]} for {@code i < count}. Entries are grouped by
+     * segment, so each segment is locked, and grown, at most once for the whole batch.
+     */
+    public void putAll(long[] codes, int[] slots, int count) {
+        int[] segmentOf = new int[count];
+        int[] starts = new int[segments.length + 1];
+        for (int i = 0; i < count; i++) {
+            checkCode(codes[i]);
+            segmentOf[i] = segmentIndex(hash(codes[i]));
+            starts[segmentOf[i] + 1]++;
+        }
+        for (int s = 0; s < segments.length; s++) {
+            starts[s + 1] += starts[s];
+        }
+        int[] order = new int[count];
+        int[] fill = starts.clone();
+        for (int i = 0; i < count; i++) {
+            order[fill[segmentOf[i]]++] = i;
+        }
+        for (int s = 0; s < segments.length; s++) {
+            if (starts[s] == starts[s + 1]) {
+                continue;
+            }
+            Segment segment = segments[s];
+            synchronized (segment) {
+                segment.reserve(starts[s + 1] - starts[s]);
+                for (int j = starts[s]; j < starts[s + 1]; j++) {
+                    int i = order[j];
+                    segment.put(hash(codes[i]), codes[i] + 1, slots[i]);
+                }
+            }
+        }
+    }
+
+    /** Removes {@code code}; returns its slot or {@link #NOT_FOUND}. */
+    public int remove(long code) {
+        long h = hash(code);
+        Segment segment = segmentFor(h);
+        synchronized (segment) {
+            return segment.remove(h, code + 1);
+        }
+    }
+
+    public int size() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.size;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    /** Visits live entries segment by segment; concurrent updates may or may not be seen. */
+    public void forEach(EntryVisitor visitor) {
+        for (Segment segment : segments) {
+            Table table = segment.table;
+            for (int i = 0; i < table.keys.length; i++) {
+                long k = (long) KEYS.getAcquire(table.keys, i);
+                if (k != EMPTY && k != TOMBSTONE) {
+                    visitor.visit(k - 1, table.slots[i]);
+                }
+            }
+        }
+    }
+
+    /** Approximate bytes held by the index arrays, filters included. */
+    public long footprintBytes() {
+        long total = 0;
+        for (Segment segment : segments) {
+            Table table = segment.table;
+            total += table.keys.length * (long) (Long.BYTES + Integer.BYTES);
+            if (table.filter != null) {
+                total += table.filter.length * (long) Long.BYTES;
+            }
+        }
+        return total;
+    }
+
+    /** Filter statistics, or null for an index without filters. */
+    public FilterMetrics filterMetrics() {
+        if (!filtered) {
+            return null;
+        }
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.table.filter.length * (long) Long.BYTES;
+        }
+        return new FilterMetrics(filterRejections.sum(), filterFalsePositives.sum(), bytes, size());
+    }
+
+    private Segment segmentFor(long h) {
+        return segments[segmentIndex(h)];
+    }
+
+    private int segmentIndex(long h) {
+        return (int) (h >>> segmentShift) & (segments.length - 1);
+    }
+
+    private static long hash(long code) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static void checkCode(long code) {
+        if (code < 0 || code >= ShortCode.SPACE) {
+            throw new IllegalArgumentException("Некорректный короткий код: " + code);
+        }
+    }
+
+    private static int tableCapacityFor(int entries) {
+        int capacity = MIN_SEGMENT_CAPACITY;
+        while (capacity * MAX_LOAD < entries) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    interface EntryVisitor {
+        void visit(long code, int slot);
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final int[] slots;
+        // One bucket per four key cells, so the filter load never exceeds the table's
+        final long[] filter;
+
+        Table(int capacity, boolean filtered) {
+            this.keys = new long[capacity];
+            this.slots = new int[capacity];
+            this.filter = filtered ? new long[capacity / 4] : null;
+        }
+
+        boolean mightContain(long h) {
+            long f = filterHash(h);
+            int fingerprint = fingerprint(f);
+            int mask = filter.length - 1;
+            int first = (int) f & mask;
+            long pattern = fingerprint * LANES;
+            return hasLane((long) KEYS.getAcquire(filter, first), pattern)
+                    || hasLane((long) KEYS.getAcquire(filter, alternate(first, fingerprint, mask)), pattern);
+        }
+
+        /** Adds the fingerprint of {@code h}; false when no relocation chain frees a lane. */
+        boolean filterAdd(long h) {
+            long f = filterHash(h);
+            int fingerprint = fingerprint(f);
+            int mask = filter.length - 1;
+            int first = (int) f & mask;
+            int second = alternate(first, fingerprint, mask);
+            return place(first, fingerprint) || place(second, fingerprint) || relocate(first, second, fingerprint);
+        }
+
+        void filterRemove(long h) {
+            long f = filterHash(h);
+            int fingerprint = fingerprint(f);
+            int mask = filter.length - 1;
+            int first = (int) f & mask;
+            if (!clear(first, fingerprint)) {
+                clear(alternate(first, fingerprint, mask), fingerprint);
+            }
+        }
+
+        private boolean place(int bucket, int fingerprint) {
+            for (int lane = 0; lane < 4; lane++) {
+                if (lane(bucket, lane) == 0) {
+                    setLane(bucket, lane, fingerprint);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean clear(int bucket, int fingerprint) {
+            for (int lane = 0; lane < 4; lane++) {
+                if (lane(bucket, lane) == fingerprint) {
+                    setLane(bucket, lane, 0);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Breadth-first search for a chain of moves from a full candidate bucket to a free
+         * lane. The chain is applied from its free end, each fingerprint copied before its
+         * old lane is overwritten, so every fingerprint stays visible to readers throughout.
+         */
+        private boolean relocate(int first, int second, int fingerprint) {
+            int mask = filter.length - 1;
+            int[] buckets = new int[MAX_SEARCH_NODES];
+            int[] lanes = new int[MAX_SEARCH_NODES];
+            int[] parents = new int[MAX_SEARCH_NODES];
+            int[] depths = new int[MAX_SEARCH_NODES];
+            int tail = 0;
+            for (int root : new int[]{first, second}) {
+                for (int lane = 0; lane < 4; lane++) {
+                    buckets[tail] = root;
+                    lanes[tail] = lane;
+                    parents[tail] = -1;
+                    depths[tail++] = 1;
+                }
+            }
+            for (int head = 0; head < tail; head++) {
+                int target = alternate(buckets[head], lane(buckets[head], lanes[head]), mask);
+                if (onPath(buckets, parents, head, target)) {
+                    continue;
+                }
+                for (int lane = 0; lane < 4; lane++) {
+                    if (lane(target, lane) == 0) {
+                        apply(buckets, lanes, parents, head, target, lane, fingerprint);
+                        return true;
+                    }
+                }
+                if (depths[head] < MAX_PATH && tail + 4 <= MAX_SEARCH_NODES) {
+                    for (int lane = 0; lane < 4; lane++) {
+                        buckets[tail] = target;
+                        lanes[tail] = lane;
+                        parents[tail] = head;
+                        depths[tail++] = depths[head] + 1;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static boolean onPath(int[] buckets, int[] parents, int node, int bucket) {
+            for (int n = node; n != -1; n = parents[n]) {
+                if (buckets[n] == bucket) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void apply(int[] buckets, int[] lanes, int[] parents, int node, int freeBucket, int freeLane,
+                           int fingerprint) {
+            int toBucket = freeBucket;
+            int toLane = freeLane;
+            for (int n = node; n != -1; n = parents[n]) {
+                setLane(toBucket, toLane, lane(buckets[n], lanes[n]));
+                toBucket = buckets[n];
+                toLane = lanes[n];
+            }
+            setLane(toBucket, toLane, fingerprint);
+        }
+
+        private int lane(int bucket, int lane) {
+            return (int) (filter[bucket] >>> (lane << 4)) & 0xFFFF;
+        }
+
+        private void setLane(int bucket, int lane, int fingerprint) {
+            int shift = lane << 4;
+            KEYS.setRelease(filter, bucket, (filter[bucket] & ~(0xFFFFL << shift)) | ((long) fingerprint << shift));
+        }
+    }
+
+    private static long filterHash(long h) {
+        long f = h * 0xC2B2AE3D27D4EB4FL;
+        return f ^ (f >>> 32);
+    }
+
+    /** Non-zero 16-bit fingerprint; 0 marks a free lane. */
+    private static int fingerprint(long f) {
+        int fingerprint = (int) (f >>> 48);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /** The other candidate bucket; applying it twice gives the first one back. */
+    private static int alternate(int bucket, int fingerprint, int mask) {
+        return (bucket ^ (fingerprint * 0x5BD1E995)) & mask;
+    }
+
+    /** Whether a lane of {@code bucket} equals the fingerprint repeated in {@code pattern}. */
+    private static boolean hasLane(long bucket, long pattern) {
+        long x = bucket ^ pattern;
+        return ((x - LANES) & ~x & LANE_HIGH_BITS) != 0;
+    }
+
+    private static final class Segment {
+        volatile Table table;
+        volatile int size;
+        private int used; // live entries plus tombstones
+        private final boolean filtered;
+
+        Segment(int capacity, boolean filtered) {
+            this.filtered = filtered;
+            this.table = new Table(capacity, filtered);
+        }
+
+        int put(long h, long key, int slot) {
+            Table t = table;
+            int mask = t.keys.length - 1;
+            int i = (int) h & mask;
+            for (; ; i = (i + 1) & mask) {
+                long k = t.keys[i];
+                if (k == key) {
+                    int previous = t.slots[i];
+                    // Same key, so a racing reader sees either the old or the new slot
+                    t.slots[i] = slot;
+                    return previous;
+                }
+                if (k == EMPTY) {
+                    break;
+                }
+            }
+            if (used + 1 > t.keys.length * MAX_LOAD) {
+                rehash(size + 1);
+                return put(h, key, slot);
+            }
+            if (t.filter != null && !t.filterAdd(h)) {
+                // Practically never below the maximum load: a larger filter has room
+                rehash(Math.max(size + 1, t.keys.length));
+                return put(h, key, slot);
+            }
+            t.slots[i] = slot;
+            KEYS.setRelease(t.keys, i, key);
+            used++;
+            size = size + 1;
+            return NOT_FOUND;
+        }
+
+        /** Grows the table once so that {@code extra} more keys fit without a rehash. */
+        void reserve(int extra) {
+            if (used + extra > table.keys.length * MAX_LOAD) {
+                rehash(size + extra);
+            }
+        }
+
+        int remove(long h, long key) {
+            Table t = table;
+            int mask = t.keys.length - 1;
+            for (int i = (int) h & mask; ; i = (i + 1) & mask) {
+                long k = t.keys[i];
+                if (k == key) {
+                    KEYS.setRelease(t.keys, i, TOMBSTONE);
+                    if (t.filter != null) {
+                        t.filterRemove(h);
+                    }
+                    size = size - 1;
+                    return t.slots[i];
+                }
+                if (k == EMPTY) {
+                    return NOT_FOUND;
+                }
+            }
+        }
+
+        private void rehash(int liveEntries) {
+            Table old = table;
+            int capacity = tableCapacityFor(Math.max(liveEntries * 2, MIN_SEGMENT_CAPACITY));
+            Table fresh;
+            do {
+                fresh = rebuild(old, capacity);
+                capacity <<= 1;
+            } while (fresh == null);
+            used = size;
+            // Volatile publish: readers of the new table see fully built arrays
+            table = fresh;
+        }
+
+        /** Copies the live entries into a table of {@code capacity}; null if its filter overflows. */
+        private Table rebuild(Table old, int capacity) {
+            Table fresh = new Table(capacity, filtered);
+            int mask = capacity - 1;
+            for (int j = 0; j < old.keys.length; j++) {
+                long k = old.keys[j];
+                if (k == EMPTY || k == TOMBSTONE) {
+                    continue;
+                }
+                long h = hash(k - 1);
+                if (fresh.filter != null && !fresh.filterAdd(h)) {
+                    return null;
+                }
+                int i = (int) h & mask;
+                while (fresh.keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                fresh.keys[i] = k;
+                fresh.slots[i] = old.slots[j];
+            }
+            return fresh;
+        }
+    }
+
+    /** Point-in-time view of the filter statistics. */
+    static final class FilterMetrics {
+        private final long rejections;
+        private final long falsePositives;
+        private final long bytes;
+        private final int keys;
+
+        FilterMetrics(long rejections, long falsePositives, long bytes, int keys) {
+            this.rejections = rejections;
+            this.falsePositives = falsePositives;
+            this.bytes = bytes;
+            this.keys = keys;
+        }
+
+        /** Lookups of absent keys answered by the filter alone. */
+        public long getRejections() {
+            return rejections;
+        }
+
+        /** Lookups of absent keys that passed the filter and probed the key array. */
+        public long getFalsePositives() {
+            return falsePositives;
+        }
+
+        /** Share of absent-key lookups that passed the filter. */
+        public double getFalsePositiveRate() {
+            long absent = rejections + falsePositives;
+            return absent == 0 ? 0 : (double) falsePositives / absent;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getBytesPerKey() {
+            return keys == 0 ? 0 : (double) bytes / keys;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.List;
+
+// ==================== Link Page ====================
+
+/**
+ * One page of a user's links, in creation order. {@link #getNextPageToken()} is an
+ * opaque continuation token for the following page, or null after the last page.
+ * Tokens stay valid when links are deleted between pages.
+ */
+final class LinkPage {
+    private final List<ShortLink> links;
+    private final String nextPageToken;
+
+    LinkPage(List<ShortLink> links, String nextPageToken) {
+        this.links = links;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<ShortLink> getLinks() {
+        return links;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+
+    /** Position after a given entry of a user's chain in {@link UserLinkIndex}. */
+    static final class Cursor {
+        int slot = UserLinkIndex.NONE;
+        long seq;
+        boolean done;
+
+        static Cursor parse(String token) {
+            Cursor cursor = new Cursor();
+            if (token == null || token.isEmpty()) {
+                return cursor;
+            }
+            int dot = token.indexOf('.');
+            try {
+                cursor.seq = Long.parseLong(token.substring(0, dot), Character.MAX_RADIX);
+                cursor.slot = Integer.parseInt(token.substring(dot + 1), Character.MAX_RADIX);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Некорректный токен страницы: " + token);
+            }
+            return cursor;
+        }
+
+        String toToken() {
+            return done ? null
+                    : Long.toString(seq, Character.MAX_RADIX) + '.' + Integer.toString(slot, Character.MAX_RADIX);
+        }
+    }
+}
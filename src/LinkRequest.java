@@ -0,0 +1,38 @@
+import java.time.Duration;
+
+// ==================== Link Request ====================
+
+/** Parameters of one link for {@link ShortLinkService#createShortLinks}. */
+final class LinkRequest {
+    private final String longUrl;
+    private final String userId;
+    private final int clickLimit;
+    private final Duration ttl;
+
+    LinkRequest(String longUrl, String userId, int clickLimit) {
+        this(longUrl, userId, clickLimit, ShortLinkService.DEFAULT_TTL);
+    }
+
+    LinkRequest(String longUrl, String userId, int clickLimit, Duration ttl) {
+        this.longUrl = longUrl;
+        this.userId = userId;
+        this.clickLimit = clickLimit;
+        this.ttl = ttl;
+    }
+
+    public String getLongUrl() {
+        return longUrl;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public int getClickLimit() {
+        return clickLimit;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+}
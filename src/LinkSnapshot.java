@@ -0,0 +1,235 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.function.LongFunction;
+
+// ==================== Link Snapshot ====================
+
+/**
+ * Point-in-time image of the link store in a fixed-layout file that is read through
+ * memory mappings, so opening it costs nothing and single links can be looked up right away.
+ * <pre>
+ * header (64 bytes)  magic int, version int, generator key long, log position long,
+ *                    record count long, URL section offset long
+ * records            {@value #RECORD_SIZE} bytes each, sorted by code:
+ *                    code, user msb, user lsb, creation, expiry, URL offset (longs),
+ *                    clickLimit, clickCount, URL length (ints), padding
+ * URLs               UTF-8 bytes, addressed from the records
+ * </pre>
+ * The log position tells {@link WriteAheadLog#replay} where the tail after the
+ * snapshot starts. Files are written to a temporary name and moved into place, so a
+ * crash while writing leaves the previous snapshot intact.
+ */
+final class LinkSnapshot implements Closeable {
+    static final int RECORD_SIZE = 64;
+    private static final int MAGIC = 0x534C534E; // "SLSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int CODE = 0;
+    private static final int USER_MSB = 8;
+    private static final int USER_LSB = 16;
+    private static final int CREATION = 24;
+    private static final int EXPIRY = 32;
+    private static final int URL_OFFSET = 40;
+    private static final int CLICK_LIMIT = 48;
+    private static final int CLICK_COUNT = 52;
+    private static final int URL_LENGTH = 56;
+    // Records per mapping, keeping every mapping under the 2 GB buffer limit
+    private static final int CHUNK_BITS = 24;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long generatorKey;
+    private final long logPosition;
+    private final int size;
+    private final long urlBase;
+
+    private LinkSnapshot(FileChannel channel, long generatorKey, long logPosition, int size, long urlBase)
+            throws IOException {
+        this.channel = channel;
+        this.generatorKey = generatorKey;
+        this.logPosition = logPosition;
+        this.size = size;
+        this.urlBase = urlBase;
+        this.chunks = new MappedByteBuffer[(size + CHUNK_MASK) >>> CHUNK_BITS];
+        for (int i = 0; i < chunks.length; i++) {
+            long first = (long) i << CHUNK_BITS;
+            long records = Math.min(size - first, 1L << CHUNK_BITS);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE,
+                    records * RECORD_SIZE);
+        }
+    }
+
+    static LinkSnapshot open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.read(header, 0) < HEADER_SIZE) {
+                throw new IOException("Повреждённый снимок: " + file);
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Не снимок ссылок: " + file);
+            }
+            long generatorKey = header.getLong();
+            long logPosition = header.getLong();
+            long size = header.getLong();
+            long urlBase = header.getLong();
+            if (size < 0 || size > Integer.MAX_VALUE || urlBase < HEADER_SIZE + size * RECORD_SIZE
+                    || urlBase > channel.size()) {
+                throw new IOException("Повреждённый снимок: " + file);
+            }
+            return new LinkSnapshot(channel, generatorKey, logPosition, (int) size, urlBase);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the links behind {@code sortedCodes} to {@code file}.
+     * Codes for which {@code links} returns null, i.e. deleted meanwhile, are left out.
+     */
+    static void write(Path file, long generatorKey, long logPosition, long[] sortedCodes,
+                      LongFunction<ShortLink> links) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long urlBase = HEADER_SIZE + (long) sortedCodes.length * RECORD_SIZE;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer records = ByteBuffer.allocateDirect(1 << 16);
+            ByteBuffer urls = ByteBuffer.allocateDirect(1 << 16);
+            long recordPosition = HEADER_SIZE;
+            long urlPosition = urlBase;
+            long urlOffset = 0;
+            int count = 0;
+            for (long code : sortedCodes) {
+                ShortLink link = links.apply(code);
+                if (link == null) {
+                    continue;
+                }
+                byte[] url = link.getLongUrl().getBytes(StandardCharsets.UTF_8);
+                if (records.remaining() < RECORD_SIZE) {
+                    recordPosition += drain(channel, records, recordPosition);
+                }
+                int base = records.position();
+                records.putLong(base + CODE, code)
+                        .putLong(base + USER_MSB, link.getUserIdMsb())
+                        .putLong(base + USER_LSB, link.getUserIdLsb())
+                        .putLong(base + CREATION, link.getCreationMillis())
+                        .putLong(base + EXPIRY, link.getExpiryMillis())
+                        .putLong(base + URL_OFFSET, urlOffset)
+                        .putInt(base + CLICK_LIMIT, link.getClickLimit())
+                        .putInt(base + CLICK_COUNT, link.getClickCount())
+                        .putInt(base + URL_LENGTH, url.length);
+                records.position(base + RECORD_SIZE);
+                for (int written = 0; written < url.length; ) {
+                    if (!urls.hasRemaining()) {
+                        urlPosition += drain(channel, urls, urlPosition);
+                    }
+                    int n = Math.min(urls.remaining(), url.length - written);
+                    urls.put(url, written, n);
+                    written += n;
+                }
+                urlOffset += url.length;
+                count++;
+            }
+            drain(channel, records, recordPosition);
+            drain(channel, urls, urlPosition);
+
+            // Header last: a file without a valid header is never opened
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generatorKey).putLong(logPosition)
+                    .putLong(count).putLong(urlBase).clear();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int drain(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        long at = position;
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+        buffer.clear();
+        return length;
+    }
+
+    public long generatorKey() {
+        return generatorKey;
+    }
+
+    /** {@link WriteAheadLog#position()} at which the snapshot was taken. */
+    public long logPosition() {
+        return logPosition;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long code(int index) {
+        return chunk(index).getLong(offset(index) + CODE);
+    }
+
+    /** Index of {@code code}, by binary search over the sorted records, or -1. */
+    public int find(long code) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = code(mid);
+            if (value < code) {
+                low = mid + 1;
+            } else if (value > code) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Detached link object for the record at {@code index}. */
+    public ShortLink read(int index) throws IOException {
+        ByteBuffer chunk = chunk(index);
+        int base = offset(index);
+        byte[] url = new byte[chunk.getInt(base + URL_LENGTH)];
+        ByteBuffer target = ByteBuffer.wrap(url);
+        long position = urlBase + chunk.getLong(base + URL_OFFSET);
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("Повреждённый снимок: URL за концом файла");
+            }
+        }
+        return new ShortLink(chunk.getLong(base + CODE), new String(url, StandardCharsets.UTF_8),
+                new UUID(chunk.getLong(base + USER_MSB), chunk.getLong(base + USER_LSB)),
+                chunk.getInt(base + CLICK_LIMIT), chunk.getInt(base + CLICK_COUNT),
+                chunk.getLong(base + CREATION), chunk.getLong(base + EXPIRY));
+    }
+
+    private ByteBuffer chunk(int index) {
+        return chunks[index >>> CHUNK_BITS];
+    }
+
+    private static int offset(int index) {
+        return (index & CHUNK_MASK) * RECORD_SIZE;
+    }
+
+    /** Closes the file; mappings stay readable until they are collected. */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.UUID;
+
+// ==================== Link Storage ====================
+
+/**
+ * Slot-addressed storage of link records, the target of {@link LinkIndex} lookups.
+ * <p>
+ * A released slot may be handed out again right away. Readers that obtained a slot
+ * from the index check {@link #code(int)} before trusting the other fields, and the
+ * click accounting methods take the expected code so that they never act on a record
+ * that has been replaced in the meantime.
+ * <p>
+ * A record is removed by exactly one owner: either the caller whose {@link #tryClick}
+ * consumed the last click, or the caller whose {@link #tryClaim} succeeded. Only the
+ * owner releases the slot.
+ */
+interface LinkStorage {
+    /** {@link #tryClick} result: the slot no longer holds the code, or the link was claimed. */
+    int LINK_GONE = -1;
+    /** {@link #tryClick} result: all clicks were consumed already. */
+    int CLICKS_EXHAUSTED = -2;
+
+    /** Stores a new record and returns its slot. */
+    default int allocate(long code, String longUrl, String userId, int clickLimit, long creationMillis,
+                         long expiryMillis) {
+        return allocate(code, longUrl, UUID.fromString(userId), clickLimit, creationMillis, expiryMillis);
+    }
+
+    /** Same as the String form, for callers that parsed the user id already. */
+    int allocate(long code, String longUrl, UUID userId, int clickLimit, long creationMillis, long expiryMillis);
+
+    void release(int slot);
+
+    /** Code held by the slot, or {@link ShortCode#INVALID} for a free slot. */
+    long code(int slot);
+
+    String longUrl(int slot);
+
+    String userId(int slot);
+
+    int clickLimit(int slot);
+
+    int clickCount(int slot);
+
+    /**
+     * Consumes one click of the link {@code code} in {@code slot} with a CAS loop.
+     *
+     * @return the new click count, {@link #CLICKS_EXHAUSTED} or {@link #LINK_GONE}
+     */
+    int tryClick(int slot, long code);
+
+    /** Takes ownership of a live link with clicks left, e.g. on expiry; true for at most one caller. */
+    boolean tryClaim(int slot, long code);
+
+    /** Recovery: raises the click count of the link {@code code} in {@code slot} to at least {@code clickCount}. */
+    void restoreClicks(int slot, long code, int clickCount);
+
+    long expiryMillis(int slot);
+
+    /** Link object for callers outside the service; a detached copy for non-heap storages. */
+    ShortLink view(int slot);
+
+    /** Number of slots handed out so far, free ones included; every record is in {@code [0, slotCount())}. */
+    int slotCount();
+}
+
+/**
+ * Slot numbering shared by the storages: released slots are reused first (LIFO),
+ * then new slots are taken from a high-water mark.
+ */
+class SlotAllocator {
+    private int[] freeSlots = new int[1024];
+    private int freeCount;
+    private int highWater;
+
+    public synchronized int acquire() {
+        return freeCount > 0 ? freeSlots[--freeCount] : highWater++;
+    }
+
+    public synchronized void release(int slot) {
+        if (freeCount == freeSlots.length) {
+            int[] grown = new int[freeSlots.length << 1];
+            System.arraycopy(freeSlots, 0, grown, 0, freeCount);
+            freeSlots = grown;
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /** Number of slots ever handed out, including released ones. */
+    public synchronized int highWater() {
+        return highWater;
+    }
+}
@@ -1,32 +1,131 @@
 import java.awt.*;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.Map;
 import java.util.Scanner;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Main {
+    private static final int LIST_PAGE_SIZE = 10;
+    private static final long WAL_COMMIT_MILLIS = 10;
+    private static final long HOT_CACHE_MEGABYTES = 64;
     private final ShortLinkService service;
     private final Scanner scanner;
     private String currentUserId;
 
     public Main() {
-        this.service = new ShortLinkService();
+        this(new ShortLinkService());
+    }
+
+    public Main(ShortLinkService service) {
+        this.service = service;
         this.scanner = new Scanner(System.in);
         this.currentUserId = loadOrCreateUserId();
     }
 
-    public static void main(String[] args) {
-        Main sls = new Main();
-        sls.run();
+    public static void main(String[] args) throws IOException {
+        boolean offHeap = false;
+        boolean nio = false;
+        int httpPort = -1;
+        String walPath = null;
+        String snapshotPath = null;
+        long lazyExpiryBudget = 0;
+        String importPath = null;
+        AsyncNotificationService.Overflow notifyOverflow = AsyncNotificationService.Overflow.BLOCK;
+        long hotCacheBytes = 0;
+        boolean codeFilter = false;
+        for (String arg : args) {
+            if (arg.equals("--off-heap")) {
+                // Link records in direct memory instead of ShortLink objects
+                offHeap = true;
+            } else if (arg.startsWith("--http=")) {
+                // Redirect server answering GET /{code}
+                httpPort = Integer.parseInt(arg.substring("--http=".length()));
+            } else if (arg.startsWith("--wal=")) {
+                // Links survive restarts through a write-ahead log
+                walPath = arg.substring("--wal=".length());
+            } else if (arg.startsWith("--snapshot=")) {
+                // Periodic snapshots next to the log, for fast restarts
+                snapshotPath = arg.substring("--snapshot=".length());
+            } else if (arg.equals("--lazy-expiry")) {
+                // No expiry timers: dead on read, reclaimed by a background sweeper
+                lazyExpiryBudget = ExpirySweeper.DEFAULT_BUDGET_MICROS;
+            } else if (arg.startsWith("--lazy-expiry=")) {
+                // Same, with the sweeper CPU budget in microseconds per second
+                lazyExpiryBudget = Long.parseLong(arg.substring("--lazy-expiry=".length()));
+            } else if (arg.startsWith("--import=")) {
+                // Bulk import of a CSV or JSONL file before the menu starts
+                importPath = arg.substring("--import=".length());
+            } else if (arg.equals("--notify-drop")) {
+                // Drop notifications instead of slowing clicks down when the queue is full
+                notifyOverflow = AsyncNotificationService.Overflow.DROP;
+            } else if (arg.equals("--hot-cache")) {
+                // Heap cache of popular links; only pays off in front of a storage slower than memory
+                hotCacheBytes = HOT_CACHE_MEGABYTES << 20;
+            } else if (arg.startsWith("--hot-cache=")) {
+                // Same, with the cache size in megabytes
+                hotCacheBytes = Long.parseLong(arg.substring("--hot-cache=".length())) << 20;
+            } else if (arg.equals("--code-filter")) {
+                // Cuckoo filter of the live codes in front of the index, for scanner-heavy traffic
+                codeFilter = true;
+            } else if (arg.equals("--nio")) {
+                // Selector-based redirect server instead of a thread per request
+                nio = true;
+            }
+        }
+        LinkStorage storage = offHeap ? new OffHeapLinkStorage() : new HeapLinkStorage();
+        WriteAheadLog wal = walPath == null ? null : WriteAheadLog.open(Paths.get(walPath), WAL_COMMIT_MILLIS);
+        ShortCodeGenerator generator = wal == null ? new FeistelShortCodeGenerator()
+                : new FeistelShortCodeGenerator(wal.generatorKey(), 0);
+        NotificationService notifications = new AsyncNotificationService(new AsyncNotificationService.ConsoleSink(),
+                AsyncNotificationService.DEFAULT_CAPACITY, notifyOverflow, AsyncNotificationService.DEFAULT_LINGER_MILLIS);
+        Main sls = new Main(new ShortLinkService(generator, storage, notifications, wal,
+                snapshotPath == null ? null : Paths.get(snapshotPath), lazyExpiryBudget, hotCacheBytes,
+                codeFilter));
+        if (importPath != null) {
+            sls.importLinks(importPath);
+        }
+
+        RedirectServer server = null;
+        NioRedirectServer nioServer = null;
+        if (httpPort >= 0 && nio) {
+            nioServer = new NioRedirectServer(sls.service, httpPort);
+            nioServer.start();
+            System.out.println("HTTP: http://localhost:" + nioServer.getPort() + "/<код>");
+        } else if (httpPort >= 0) {
+            server = new RedirectServer(sls.service, httpPort);
+            server.start();
+            System.out.println("HTTP: http://localhost:" + server.getPort() + "/<код>");
+        }
+        try {
+            sls.run();
+        } finally {
+            // Servers first, waiting for their requests, so no click reaches a closed log
+            if (server != null) {
+                server.stop();
+            }
+            if (nioServer != null) {
+                nioServer.stop();
+            }
+            sls.service.shutdown();
+        }
     }
 
+    /** Runs the console menu until the user quits; shutting the service down is left to the caller. */
     public void run() {
         System.out.println("=== Сервис коротких ссылок ===");
         System.out.println(" Ваш User ID: " + currentUserId);
@@ -50,8 +149,15 @@ public class Main {
                     showStats();
                     break;
                 case "5":
+                    System.out.println("Путь к файлу CSV или JSONL: ");
+                    importLinks(scanner.nextLine().trim());
+                    break;
+                case "6":
+                    System.out.println("Путь к файлу (.jsonl или .csv, можно с .gz): ");
+                    exportLinks(scanner.nextLine().trim());
+                    break;
+                case "7":
                     System.out.println("Программа завершена!");
-                    service.shutdown();
                     return;
                 default:
                     System.out.println("Не корректный выбор. Выберите пункт меню");
@@ -66,7 +172,9 @@ public class Main {
         System.out.println("2. Открыть короткую ссылку");
         System.out.println("3. Список ссылок");
         System.out.println("4. Показать статистику");
-        System.out.println("5. Выход");
+        System.out.println("5. Импорт ссылок из файла");
+        System.out.println("6. Экспорт ссылок в файл");
+        System.out.println("7. Выход");
         System.out.println("Выберите пункт меню: ");
     }
 
@@ -77,14 +185,47 @@ public class Main {
         System.out.println("Лимит переходов: ");
         int clickLimit = Integer.parseInt(scanner.nextLine().trim());
 
+        System.out.println("Время жизни, например 30m, 12h или 7d (Enter - "
+                + ShortLinkService.DEFAULT_TTL.toHours() + "h): ");
+        String ttl = scanner.nextLine();
+
         try {
-            String shortCode = service.createShortLink(longUrl, currentUserId, clickLimit);
+            String shortCode = service.createShortLink(longUrl, currentUserId, clickLimit, parseTtl(ttl));
             System.out.println("Короткая ссылка создана: " + shortCode);
         } catch (Exception e) {
             System.out.println("Ошибка: " + e.getMessage());
         }
     }
 
+    /** Parses a TTL given as a number with a unit m, h or d; a bare number means hours. */
+    static Duration parseTtl(String text) {
+        String ttl = text.trim().toLowerCase(Locale.ROOT);
+        if (ttl.isEmpty()) {
+            return ShortLinkService.DEFAULT_TTL;
+        }
+        char unit = ttl.charAt(ttl.length() - 1);
+        String amount = Character.isDigit(unit) ? ttl : ttl.substring(0, ttl.length() - 1).trim();
+        long value;
+        try {
+            value = Long.parseLong(amount);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректное время жизни: " + text.trim());
+        }
+        switch (unit) {
+            case 'm':
+                return Duration.ofMinutes(value);
+            case 'd':
+                return Duration.ofDays(value);
+            case 'h':
+                return Duration.ofHours(value);
+            default:
+                if (Character.isDigit(unit)) {
+                    return Duration.ofHours(value);
+                }
+                throw new IllegalArgumentException("Некорректное время жизни: " + text.trim());
+        }
+    }
+
     private void openShortLink() {
         System.out.println("Введите код короткой ссылки: ");
         String shortCode = scanner.nextLine().trim();
@@ -99,24 +240,94 @@ public class Main {
     }
 
     private void listMyLinks() {
-        List<ShortLink> links = service.getUserLinks(currentUserId);
-        if (links.isEmpty()) {
+        LinkPage page = service.getUserLinks(currentUserId, null, LIST_PAGE_SIZE);
+        if (page.getLinks().isEmpty()) {
             System.out.println("Ссылок не найдено.");
             return;
         }
 
         System.out.println("\n=== Ваши ссылки ===");
-        for (ShortLink link : links) {
-            System.out.println("Код короткой ссылки: " + link.getShortCode());
-            System.out.println(" URL: " + link.getLongUrl());
-            System.out.println(" Кол-во переходов: " + link.getClickCount() + "/" + link.getClickLimit());
-            System.out.println(" Время жизни ссылки: " + link.getExpiryTime());
+        while (true) {
+            for (ShortLink link : page.getLinks()) {
+                System.out.println("Код короткой ссылки: " + link.getShortCode());
+                System.out.println(" URL: " + link.getLongUrl());
+                System.out.println(" Кол-во переходов: " + link.getClickCount() + "/" + link.getClickLimit());
+                System.out.println(" Время жизни ссылки: " + link.getExpiryTime());
+            }
+            if (!page.hasNext()) {
+                return;
+            }
+            System.out.println("Enter - следующая страница, q - в меню: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
+            }
+            page = service.getUserLinks(currentUserId, page.getNextPageToken(), LIST_PAGE_SIZE);
         }
     }
 
     private void showStats() {
         System.out.println("Всего ссылок создано: " + service.getTotalLinksCount());
-        System.out.println("Из них ваших ссылок: " + service.getUserLinks(currentUserId).size());
+        System.out.println("Из них ваших ссылок: " + service.getUserLinksCount(currentUserId));
+        ClickCoalescer.Metrics flush = service.getClickFlushMetrics();
+        if (flush != null) {
+            System.out.println("Записей о переходах в журнале: " + flush.getFlushedRecords()
+                    + " (сбросов: " + flush.getFlushes() + ", последний: " + flush.getLastBatchSize()
+                    + ", макс.: " + flush.getMaxBatchSize() + ")");
+            System.out.println("Ссылок с незаписанными переходами: " + flush.getDirtyLinks()
+                    + ", задержка записи: " + flush.getLastLagMillis() + " мс (макс. " + flush.getMaxLagMillis() + " мс)");
+        }
+        LinkIndex.FilterMetrics filter = service.getCodeFilterMetrics();
+        if (filter != null) {
+            System.out.printf("Фильтр кодов: отсеяно %d, ложных срабатываний %d (%.4f%%), %.1f байт на код%n",
+                    filter.getRejections(), filter.getFalsePositives(), filter.getFalsePositiveRate() * 100,
+                    filter.getBytesPerKey());
+        }
+        HotLinkCache.Metrics cache = service.getHotCacheMetrics();
+        if (cache != null) {
+            System.out.printf("Кэш ссылок: попаданий %.1f%% (%d из %d), записей %d, %d КБ из %d КБ%n",
+                    cache.getHitRatio() * 100, cache.getHits(), cache.getHits() + cache.getMisses(),
+                    cache.getEntries(), cache.getBytes() >> 10, cache.getMaxBytes() >> 10);
+            System.out.println("Допущено в кэш: " + cache.getAdmitted() + ", отклонено: " + cache.getRejected()
+                    + ", вытеснено: " + cache.getEvicted() + ", сброшено при удалении: " + cache.getInvalidated());
+        }
+        AsyncNotificationService.Metrics notifications = service.getNotificationMetrics();
+        if (notifications != null) {
+            System.out.println("Оповещений отправлено: " + notifications.getDelivered()
+                    + " (пакетов: " + notifications.getBatches() + ", макс. пакет: " + notifications.getMaxBatchSize()
+                    + "), в очереди: " + notifications.getPending() + ", потеряно: " + notifications.getDropped());
+        }
+        ExpirySweeper.Metrics sweep = service.getExpirySweepMetrics();
+        if (sweep != null) {
+            System.out.println("Удалено просроченных ссылок: " + sweep.getReclaimedLinks()
+                    + " фоновой очисткой, " + sweep.getExpiredOnRead() + " при переходе");
+            System.out.println("Циклов очистки: " + sweep.getCycles() + ", последний: " + sweep.getLastCycleMicros()
+                    + " мкс (макс. " + sweep.getMaxCycleMicros() + " мкс, пауза до " + sweep.getMaxSliceMicros() + " мкс)");
+        }
+    }
+
+    private void importLinks(String file) {
+        try {
+            LinkImporter.Result result = LinkImporter.importFile(service, Paths.get(file));
+            System.out.printf("Импортировано ссылок: %d, отклонено строк: %d%n",
+                    result.getImported(), result.getRejected());
+            System.out.printf("Время: %d мс (%.0f ссылок/с, %.1f МБ/с)%n", result.getElapsedMillis(),
+                    result.getLinksPerSecond(), result.getMegabytesPerSecond());
+            for (String sample : result.getRejectionSamples()) {
+                System.out.println(" Отклонено: " + sample);
+            }
+        } catch (Exception e) {
+            System.out.println("Ошибка импорта: " + e.getMessage());
+        }
+    }
+
+    private void exportLinks(String file) {
+        try {
+            LinkExporter.Result result = LinkExporter.exportFile(service, Paths.get(file));
+            System.out.printf("Экспортировано ссылок: %d, размер файла: %d байт, время: %d мс%n",
+                    result.getRows(), result.getFileBytes(), result.getElapsedMillis());
+        } catch (Exception e) {
+            System.out.println("Ошибка экспорта: " + e.getMessage());
+        }
     }
 
     private void openInBrowser(String url) {
@@ -150,123 +361,803 @@ public class Main {
 // ==================== Core Service ====================
 
 class ShortLinkService {
-    private static final int LIFETIME = 12; // Hours
-    private final Map<String, ShortLink> linkStore;
-    private final Map<String, List<String>> userLinks;
+    static final Duration DEFAULT_TTL = Duration.ofHours(12);
+    static final Duration MAX_TTL = Duration.ofDays(365);
+    private static final long EXPIRY_TICK_MILLIS = 1000;
+    private static final int STREAM_PAGE_SIZE = 256;
+    private static final long SNAPSHOT_INTERVAL_MINUTES = 10;
+    private static final int SNAPSHOT_LOAD_BATCH = 1024;
+    private final LinkIndex linkIndex;
+    private final LinkStorage storage;
+    private final UserLinkIndex userLinks;
     private final ScheduledExecutorService scheduler;
+    // Exactly one of the two is set, depending on the expiry mode
+    private final ExpiryWheel expiryWheel;
+    private final ExpirySweeper expirySweeper;
     private final NotificationService notificationService;
+    private final HotLinkCache hotCache;
+    private final ShortCodeGenerator codeGenerator;
+    private final WriteAheadLog wal;
+    private final ClickCoalescer clickCoalescer;
+    private final Path snapshotFile;
+    // While a snapshot is being loaded: the snapshot, which of its records were taken over
+    // into the store (guarded by snapshotLock), and a latch released once all of them were
+    private volatile LinkSnapshot snapshot;
+    private long[] promoted;
+    private final Object snapshotLock = new Object();
+    private final CountDownLatch snapshotLoaded = new CountDownLatch(1);
 
     public ShortLinkService() {
-        this.linkStore = new ConcurrentHashMap<>();
-        this.userLinks = new ConcurrentHashMap<>();
-        this.scheduler = Executors.newScheduledThreadPool(2);
-        this.notificationService = new NotificationService();
+        this(new FeistelShortCodeGenerator());
+    }
+
+    public ShortLinkService(ShortCodeGenerator codeGenerator) {
+        this(codeGenerator, new HeapLinkStorage());
+    }
+
+    public ShortLinkService(ShortCodeGenerator codeGenerator, LinkStorage storage) {
+        this(codeGenerator, storage, new NotificationService());
+    }
+
+    public ShortLinkService(ShortCodeGenerator codeGenerator, LinkStorage storage,
+                            NotificationService notificationService) {
+        this(codeGenerator, storage, notificationService, null);
+    }
+
+    /** Durable service: state is recovered from {@code wal}, whose key seeds the code generator. */
+    public ShortLinkService(WriteAheadLog wal, LinkStorage storage) {
+        this(wal, null, storage);
+    }
+
+    /** Durable service that also writes periodic snapshots to {@code snapshotFile} and starts from them. */
+    public ShortLinkService(WriteAheadLog wal, Path snapshotFile, LinkStorage storage) {
+        this(new FeistelShortCodeGenerator(wal.generatorKey(), 0), storage, new NotificationService(), wal,
+                snapshotFile);
+    }
+
+    public ShortLinkService(ShortCodeGenerator codeGenerator, LinkStorage storage,
+                            NotificationService notificationService, WriteAheadLog wal) {
+        this(codeGenerator, storage, notificationService, wal, null);
+    }
+
+    /**
+     * @param wal          log to replay and then append every change to, or null for a volatile service;
+     *                     the generator must issue codes with the key of the log
+     * @param snapshotFile snapshot to start from and to refresh periodically, or null; requires {@code wal}
+     */
+    public ShortLinkService(ShortCodeGenerator codeGenerator, LinkStorage storage,
+                            NotificationService notificationService, WriteAheadLog wal, Path snapshotFile) {
+        this(codeGenerator, storage, notificationService, wal, snapshotFile, 0);
+    }
+
+    /**
+     * @param lazyExpiryBudgetMicros 0 to expire links on time through a timing wheel; otherwise
+     *                               links are only found dead on read and an {@link ExpirySweeper}
+     *                               with this CPU budget per second reclaims them
+     */
+    public ShortLinkService(ShortCodeGenerator codeGenerator, LinkStorage storage,
+                            NotificationService notificationService, WriteAheadLog wal, Path snapshotFile,
+                            long lazyExpiryBudgetMicros) {
+        this(codeGenerator, storage, notificationService, wal, snapshotFile, lazyExpiryBudgetMicros, 0);
+    }
+
+    /**
+     * @param hotCacheBytes heap budget of a {@link HotLinkCache} in front of the storage for
+     *                      redirects of popular links, or 0 for none; the in-memory storages
+     *                      are about as fast as a hit, so it is meant for slower ones
+     */
+    public ShortLinkService(ShortCodeGenerator codeGenerator, LinkStorage storage,
+                            NotificationService notificationService, WriteAheadLog wal, Path snapshotFile,
+                            long lazyExpiryBudgetMicros, long hotCacheBytes) {
+        this(codeGenerator, storage, notificationService, wal, snapshotFile, lazyExpiryBudgetMicros, hotCacheBytes,
+                false);
+    }
+
+    /**
+     * @param codeFilter whether lookups consult a cuckoo filter of the live codes before the
+     *                   index, which rejects unknown codes faster and slows hits down a little
+     */
+    public ShortLinkService(ShortCodeGenerator codeGenerator, LinkStorage storage,
+                            NotificationService notificationService, WriteAheadLog wal, Path snapshotFile,
+                            long lazyExpiryBudgetMicros, long hotCacheBytes, boolean codeFilter) {
+        if (snapshotFile != null && wal == null) {
+            throw new IllegalArgumentException("Снимки требуют журнала");
+        }
+        this.codeGenerator = codeGenerator;
+        this.wal = wal;
+        this.snapshotFile = snapshotFile;
+        this.storage = storage;
+        this.linkIndex = new LinkIndex(codeFilter);
+        this.userLinks = new UserLinkIndex();
+        this.notificationService = notificationService;
+        this.hotCache = hotCacheBytes > 0 ? new HotLinkCache(hotCacheBytes) : null;
+        this.expiryWheel = lazyExpiryBudgetMicros > 0 ? null : new ExpiryWheel(EXPIRY_TICK_MILLIS,
+                System.currentTimeMillis(), this::expiryOf, this::expireBatch);
+        if (wal != null) {
+            recover(wal);
+            this.clickCoalescer = new ClickCoalescer(wal, this::clickCountOf,
+                    wal.clickFlushMillis(), wal.clickFlushThreshold());
+        } else {
+            this.clickCoalescer = null;
+            snapshotLoaded.countDown();
+        }
+        // Snapshots get their own thread so that writing one never delays expiry ticks
+        this.scheduler = Executors.newScheduledThreadPool(snapshotFile == null ? 1 : 2);
+        if (expiryWheel != null) {
+            this.expirySweeper = null;
+            this.scheduler.scheduleAtFixedRate(() -> expiryWheel.advance(System.currentTimeMillis()),
+                    EXPIRY_TICK_MILLIS, EXPIRY_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            this.expirySweeper = new ExpirySweeper(storage, this::expireCodes, lazyExpiryBudgetMicros);
+            expirySweeper.start();
+        }
+        if (snapshotFile != null) {
+            this.scheduler.scheduleWithFixedDelay(this::scheduledSnapshot,
+                    SNAPSHOT_INTERVAL_MINUTES, SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
     }
 
     public String createShortLink(String longUrl, String userId, int clickLimit) {
-        String shortCode = generateUniqueShortCode(userId);
-        LocalDateTime expiryTime = LocalDateTime.now().plusHours(LIFETIME);
+        return createShortLink(longUrl, userId, clickLimit, DEFAULT_TTL);
+    }
 
-        ShortLink link = new ShortLink(shortCode, longUrl, userId, clickLimit, expiryTime);
-        linkStore.put(shortCode, link);
+    /**
+     * Creates a link that expires {@code ttl} after now. Any TTL up to {@link #MAX_TTL} is
+     * tracked by the timing wheel: short ones in its fine buckets, long ones in coarse
+     * buckets that are cascaded down as they come due.
+     */
+    public String createShortLink(String longUrl, String userId, int clickLimit, Duration ttl) {
+        checkUrl(longUrl);
+        checkClickLimit(clickLimit);
+        checkTtl(ttl);
+        String owner = canonicalUserId(userId);
+        // The generator only knows every used code once the snapshot is loaded
+        awaitSnapshotLoaded();
+        // Codes are unique by construction, no store probe needed
+        long code = codeGenerator.next();
+        long now = System.currentTimeMillis();
+        long expiryMillis = now + ttl.toMillis();
 
-        userLinks.computeIfAbsent(userId, k -> new ArrayList<>()).add(shortCode);
+        int slot = storage.allocate(code, longUrl, owner, clickLimit, now, expiryMillis);
+        // Listed before it becomes reachable, so a fast deletion always finds it in the user index.
+        // Published under the log lock, so its clicks and deletion follow it in the log
+        Runnable publish = () -> {
+            userLinks.add(owner, slot);
+            linkIndex.put(code, slot);
+        };
+        long logPosition = 0;
+        if (wal == null) {
+            publish.run();
+        } else {
+            logPosition = wal.logCreate(code, longUrl, owner, clickLimit, now, expiryMillis, publish);
+        }
 
-        // Schedule expiry task
-        scheduleExpiry(shortCode, userId);
+        scheduleExpiry(code, expiryMillis);
 
-        return shortCode;
+        if (wal != null) {
+            // A code handed out must survive a crash; concurrent creations share one fsync
+            wal.awaitDurable(logPosition);
+        }
+        return ShortCode.decode(code);
     }
 
-    public String clickShortLink(String shortCode, String userId) throws Exception {
-        ShortLink link = linkStore.get(shortCode);
+    /**
+     * Creates many links at once and returns their codes in request order. Codes come from one
+     * reserved block of the generator, and every index is updated in one pass: the link index
+     * locks each segment once, user lists are appended run by run, expiries enter the wheel
+     * under one lock and the log takes all creations under one lock and one fsync wait.
+     * All requests are validated before any link is created.
+     */
+    public List<String> createShortLinks(List<LinkRequest> requests) {
+        int count = requests.size();
+        // Parsed up front, once per run of requests by the same user, so a bad request leaves nothing behind
+        UUID[] users = new UUID[count];
+        String[] owners = new String[count];
+        for (int i = 0; i < count; i++) {
+            LinkRequest request = requests.get(i);
+            checkUrl(request.getLongUrl());
+            checkClickLimit(request.getClickLimit());
+            checkTtl(request.getTtl());
+            if (i > 0 && request.getUserId().equals(requests.get(i - 1).getUserId())) {
+                users[i] = users[i - 1];
+                owners[i] = owners[i - 1];
+            } else {
+                users[i] = UUID.fromString(request.getUserId());
+                owners[i] = users[i].toString();
+            }
+        }
+        if (count == 0) {
+            return List.of();
+        }
+        awaitSnapshotLoaded();
+        long[] codes = new long[count];
+        codeGenerator.next(codes, count);
+        long now = System.currentTimeMillis();
+        long[] expiryMillis = new long[count];
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            LinkRequest request = requests.get(i);
+            expiryMillis[i] = now + request.getTtl().toMillis();
+            slots[i] = storage.allocate(codes[i], request.getLongUrl(), users[i],
+                    request.getClickLimit(), now, expiryMillis[i]);
+        }
+        // Same order as a single creation: listed first, then reachable
+        Runnable publish = () -> {
+            for (int from = 0, to; from < count; from = to) {
+                String owner = owners[from];
+                to = from + 1;
+                while (to < count && owners[to].equals(owner)) {
+                    to++;
+                }
+                userLinks.addAll(owner, slots, from, to);
+            }
+            linkIndex.putAll(codes, slots, count);
+        };
+        long logPosition = 0;
+        if (wal == null) {
+            publish.run();
+        } else {
+            logPosition = wal.logCreates(codes, requests, now, expiryMillis, publish);
+        }
 
-        if (link == null) {
-            throw new Exception("Короткая ссылка не найдена");
+        if (expiryWheel != null) {
+            expiryWheel.addAll(codes, expiryMillis, count);
         }
 
-        if (link.isExpired()) {
-            deleteLink(shortCode, link.getUserId());
-            throw new Exception("Время работы ссылки истекло.");
+        if (wal != null) {
+            wal.awaitDurable(logPosition);
+        }
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = ShortCode.decode(codes[i]);
         }
+        return Arrays.asList(result);
+    }
 
-        synchronized (link) {
-            if (link.getClickCount() >= link.getClickLimit()) {
-                notificationService.notifyClickLimitReached(link.getUserId(), shortCode);
-                deleteLink(shortCode, link.getUserId());
+    public String clickShortLink(String shortCode, String userId) throws Exception {
+        return clickShortLink(ShortCode.encode(shortCode), userId);
+    }
+
+    /** Same as {@link #clickShortLink(String, String)} for a code already in {@link ShortCode} form. */
+    public String clickShortLink(long code, String userId) throws Exception {
+        ClickResult result = click(code);
+        switch (result.getStatus()) {
+            case OK:
+                return result.getLongUrl();
+            case EXPIRED:
+                throw new Exception("Время работы ссылки истекло.");
+            case EXHAUSTED:
                 throw new Exception("Кол-во переходов по ссылке достигло лимита. Ссылка удалена.");
+            default:
+                throw new Exception("Короткая ссылка не найдена");
+        }
+    }
+
+    public ClickResult click(String shortCode) {
+        return click(ShortCode.encode(shortCode));
+    }
+
+    /**
+     * Redirect fast path: consumes a click and reports the outcome without throwing.
+     * Misses return shared {@link ClickResult} constants and allocate nothing.
+     * <p>
+     * Lock-free: the click is consumed by a CAS in the storage, and the thread that consumes
+     * the last click is the one that deletes the link and sends the notification.
+     */
+    public ClickResult click(long code) {
+        HotLinkCache.Entry cached = hotCache == null ? null : hotCache.get(code);
+        if (cached != null && CoarseClock.millis() <= cached.expiryMillis) {
+            // The CAS checks the code of the slot: a stale entry can only miss
+            ClickResult result = consumeClick(code, cached.slot, cached.clickLimit, cached.longUrl);
+            if (result != ClickResult.NOT_FOUND) {
+                return result;
             }
+            hotCache.invalidate(code);
+        }
 
-            link.incrementClick();
+        int slot = resolve(code);
 
-            if (link.getClickCount() >= link.getClickLimit()) {
-                notificationService.notifyClickLimitReached(link.getUserId(), shortCode);
-                deleteLink(shortCode, link.getUserId());
+        if (slot == LinkIndex.NOT_FOUND) {
+            return ClickResult.NOT_FOUND;
+        }
+
+        if (CoarseClock.millis() > storage.expiryMillis(slot)) {
+            // Not reclaimed yet by the wheel or the sweeper: whoever claims it removes it
+            if (storage.tryClaim(slot, code)) {
+                String userId = storage.userId(slot);
+                deleteLink(code, slot);
+                notificationService.notifyExpiry(userId, ShortCode.decode(code));
+                if (expirySweeper != null) {
+                    expirySweeper.expiredOnRead();
+                }
             }
+            return ClickResult.EXPIRED;
+        }
+
+        // Read before the click: the slot is ours until a click or claim succeeds,
+        // afterwards the owner may release it to another link
+        int clickLimit = storage.clickLimit(slot);
+        if (storage.clickCount(slot) >= clickLimit) {
+            return ClickResult.EXHAUSTED;
         }
+        String longUrl = storage.longUrl(slot);
+        if (hotCache != null) {
+            long expiryMillis = storage.expiryMillis(slot);
+            // Checked again after the reads, which a released and reused slot could have mixed up
+            if (storage.code(slot) == code) {
+                hotCache.put(code, slot, longUrl, clickLimit, expiryMillis);
+            }
+        }
+        return consumeClick(code, slot, clickLimit, longUrl);
+    }
 
-        return  link.getLongUrl();
+    private ClickResult consumeClick(long code, int slot, int clickLimit, String longUrl) {
+        int clicks = storage.tryClick(slot, code);
+        if (clicks == LinkStorage.LINK_GONE) {
+            return ClickResult.NOT_FOUND;
+        }
+        if (clicks == LinkStorage.CLICKS_EXHAUSTED) {
+            return ClickResult.EXHAUSTED;
+        }
+        if (clickCoalescer != null) {
+            clickCoalescer.clicked(code, slot);
+        }
+        if (clicks == clickLimit) {
+            notificationService.notifyClickLimitReached(storage.userId(slot), ShortCode.decode(code));
+            deleteLink(code, slot);
+        }
+        return ClickResult.ok(longUrl);
     }
 
     public List<ShortLink> getUserLinks(String userId) {
-        List<String> codes = userLinks.getOrDefault(userId, new ArrayList<>());
-        List<ShortLink> links = new ArrayList<>();
-        for (String code : codes) {
-            ShortLink link = linkStore.get(code);
-            if (link != null) {
-                links.add(link);
-            }
+        userId = indexedUserId(userId);
+        int count = userLinks.size(userId);
+        if (count == 0) {
+            return List.of();
         }
+        List<ShortLink> links = new ArrayList<>(count);
+        fillPage(userId, new LinkPage.Cursor(), count, links);
         return links;
     }
 
+    /**
+     * Cursor-based listing: up to {@code pageSize} links following {@code pageToken}
+     * (null for the first page).
+     */
+    public LinkPage getUserLinks(String userId, String pageToken, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        LinkPage.Cursor cursor = LinkPage.Cursor.parse(pageToken);
+        userId = indexedUserId(userId);
+        List<ShortLink> links = new ArrayList<>(Math.min(pageSize, userLinks.size(userId)));
+        fillPage(userId, cursor, pageSize, links);
+        return new LinkPage(links, cursor.toToken());
+    }
+
+    /** Lazily walks the user's links page by page; links deleted meanwhile are skipped. */
+    public Stream<ShortLink> streamUserLinks(String userId) {
+        String owner = indexedUserId(userId);
+        LinkPage.Cursor cursor = new LinkPage.Cursor();
+        Spliterator<ShortLink> spliterator = new Spliterators.AbstractSpliterator<>(
+                userLinks.size(owner), Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final List<ShortLink> buffer = new ArrayList<>(STREAM_PAGE_SIZE);
+            private int position;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super ShortLink> action) {
+                while (position == buffer.size()) {
+                    if (cursor.done) {
+                        return false;
+                    }
+                    buffer.clear();
+                    position = 0;
+                    fillPage(owner, cursor, STREAM_PAGE_SIZE, buffer);
+                }
+                action.accept(buffer.get(position++));
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Visits every live link, or those of {@code userId} when it is not null, without copying
+     * the store. Weakly consistent: links created or deleted meanwhile may or may not be seen,
+     * links present throughout are seen once. Expired links that were not reclaimed yet are skipped.
+     */
+    public void forEachLink(String userId, Consumer<ShortLink> action) {
+        awaitSnapshotLoaded();
+        if (userId != null) {
+            streamUserLinks(userId).forEach(action);
+            return;
+        }
+        int slotCount = storage.slotCount();
+        for (int slot = 0; slot < slotCount; slot++) {
+            long code = storage.code(slot);
+            // Skips slots allocated for a link that is not published yet
+            if (code == ShortCode.INVALID || linkIndex.get(code) != slot) {
+                continue;
+            }
+            ShortLink link = storage.view(slot);
+            if (link != null && link.getCode() == code && !link.isExpired()) {
+                action.accept(link);
+            }
+        }
+    }
+
+    public int getUserLinksCount(String userId) {
+        return userLinks.size(indexedUserId(userId));
+    }
+
     public int getTotalLinksCount() {
-        return linkStore.size();
+        return linkIndex.size();
+    }
+
+    /** Sweeper statistics, or null when links expire through the timing wheel. */
+    public ExpirySweeper.Metrics getExpirySweepMetrics() {
+        return expirySweeper == null ? null : expirySweeper.metrics();
+    }
+
+    /** Notification pipeline statistics, or null when notifications are sent synchronously. */
+    public AsyncNotificationService.Metrics getNotificationMetrics() {
+        return notificationService instanceof AsyncNotificationService
+                ? ((AsyncNotificationService) notificationService).metrics() : null;
+    }
+
+    /** Code filter statistics, or null when lookups go to the index directly. */
+    public LinkIndex.FilterMetrics getCodeFilterMetrics() {
+        return linkIndex.filterMetrics();
+    }
+
+    /** Redirect cache statistics, or null when the service has no cache. */
+    public HotLinkCache.Metrics getHotCacheMetrics() {
+        return hotCache == null ? null : hotCache.metrics();
+    }
+
+    /** Click persistence statistics, or null for a service without a log. */
+    public ClickCoalescer.Metrics getClickFlushMetrics() {
+        return clickCoalescer == null ? null : clickCoalescer.metrics();
     }
 
-    private void deleteLink(String shortCode, String userId) {
-        linkStore.remove(shortCode);
-        List<String> codes = userLinks.get(userId);
-        if (codes != null) {
-            codes.remove(shortCode);
+    /** Slot of a live link, validated against the storage since slots are reused. */
+    private int findSlot(long code) {
+        if (code == ShortCode.INVALID) {
+            return LinkIndex.NOT_FOUND;
         }
+        int slot = linkIndex.get(code);
+        if (slot == LinkIndex.NOT_FOUND || storage.code(slot) != code) {
+            return LinkIndex.NOT_FOUND;
+        }
+        return slot;
+    }
+
+    /** Removes a link; only the owner of the link (see {@link LinkStorage}) calls this. */
+    private void deleteLink(long code, int slot) {
+        if (wal == null) {
+            removeLink(code, slot);
+        } else {
+            wal.logDelete(code, () -> removeLink(code, slot));
+        }
+    }
+
+    private void removeLink(long code, int slot) {
+        if (hotCache != null) {
+            hotCache.invalidate(code);
+        }
+        userLinks.remove(storage.userId(slot), slot);
+        if (linkIndex.remove(code) != LinkIndex.NOT_FOUND) {
+            storage.release(slot);
+        }
+    }
+
+    /** Appends up to {@code pageSize} live links after {@code cursor} to {@code out} and advances it. */
+    private void fillPage(String userId, LinkPage.Cursor cursor, int pageSize, List<ShortLink> out) {
+        // One extra entry tells whether another page follows
+        int limit = pageSize + 1;
+        int[] slots = new int[Math.min(limit, Math.max(1, userLinks.size(userId) + 1))];
+        long[] codes = new long[slots.length];
+        long[] seqs = new long[slots.length];
+        int[] found = {0};
+        userLinks.page(userId, cursor.slot, cursor.seq, Math.min(limit, slots.length), slot -> {
+            slots[found[0]] = slot;
+            codes[found[0]] = storage.code(slot);
+            seqs[found[0]++] = userLinks.seq(slot);
+        });
+        int taken = Math.min(found[0], pageSize);
+        for (int i = 0; i < taken; i++) {
+            ShortLink link = storage.view(slots[i]);
+            // Skip links deleted, and their slot reused, after the user index was read,
+            // and links expired but not reclaimed yet
+            if (link != null && link.getCode() == codes[i] && !link.isExpired()) {
+                out.add(link);
+            }
+        }
+        if (taken > 0) {
+            cursor.slot = slots[taken - 1];
+            cursor.seq = seqs[taken - 1];
+        }
+        cursor.done = found[0] <= pageSize;
+    }
+
+    /**
+     * Rebuilds the links from the snapshot, if any, and the log tail after it. Snapshot records
+     * are taken over lazily: on first access or by a background loader, so redirects are served
+     * as soon as the tail is replayed. Until the loader is done, listings and counts may miss
+     * links that are still only in the snapshot. Expired links are left to the wheel or the sweeper.
+     */
+    private void recover(WriteAheadLog wal) {
+        try {
+            long from = 0;
+            if (snapshotFile != null && Files.exists(snapshotFile)) {
+                LinkSnapshot loaded = LinkSnapshot.open(snapshotFile);
+                if (loaded.generatorKey() == wal.generatorKey()) {
+                    promoted = new long[(loaded.size() + 63) >>> 6];
+                    snapshot = loaded;
+                    from = loaded.logPosition();
+                } else {
+                    // Written for another log
+                    loaded.close();
+                }
+            }
+            wal.replay(new WriteAheadLog.Listener() {
+                @Override
+                public void created(long code, String longUrl, String userId, int clickLimit,
+                                    long creationMillis, long expiryMillis) {
+                    codeGenerator.markUsed(code);
+                    // A link created while the snapshot was written may be in both
+                    if (resolve(code) != LinkIndex.NOT_FOUND) {
+                        return;
+                    }
+                    int slot = storage.allocate(code, longUrl, userId, clickLimit, creationMillis, expiryMillis);
+                    userLinks.add(userId, slot);
+                    linkIndex.put(code, slot);
+                    scheduleExpiry(code, expiryMillis);
+                }
+
+                @Override
+                public void clicked(long code, int clickCount) {
+                    int slot = resolve(code);
+                    if (slot == LinkIndex.NOT_FOUND) {
+                        return;
+                    }
+                    storage.restoreClicks(slot, code, clickCount);
+                    // The deletion after the last click may not have made it into the log
+                    if (storage.clickCount(slot) >= storage.clickLimit(slot)) {
+                        removeLink(code, slot);
+                    }
+                }
+
+                @Override
+                public void deleted(long code) {
+                    int slot = resolve(code);
+                    if (slot != LinkIndex.NOT_FOUND) {
+                        removeLink(code, slot);
+                    }
+                }
+            }, from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LinkSnapshot loading = snapshot;
+        if (loading == null) {
+            snapshotLoaded.countDown();
+            return;
+        }
+        Thread loader = new Thread(() -> loadSnapshot(loading), "snapshot-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /** Slot of a live link, taking it over from a snapshot that is still being loaded. */
+    private int resolve(long code) {
+        int slot = findSlot(code);
+        if (slot != LinkIndex.NOT_FOUND || snapshot == null) {
+            return slot;
+        }
+        LinkSnapshot loading = snapshot;
+        int index = loading == null ? -1 : loading.find(code);
+        if (index < 0) {
+            return findSlot(code);
+        }
+        synchronized (snapshotLock) {
+            slot = findSlot(code);
+            if (slot != LinkIndex.NOT_FOUND || isPromoted(index)) {
+                // Taken over by another thread, and possibly deleted since
+                return slot;
+            }
+            return promote(loading, index);
+        }
+    }
+
+    /** Takes over the remaining snapshot records in batches, then drops the snapshot. */
+    private void loadSnapshot(LinkSnapshot loading) {
+        try {
+            for (int first = 0; first < loading.size(); first += SNAPSHOT_LOAD_BATCH) {
+                int last = Math.min(first + SNAPSHOT_LOAD_BATCH, loading.size());
+                for (int i = first; i < last; i++) {
+                    codeGenerator.markUsed(loading.code(i));
+                }
+                synchronized (snapshotLock) {
+                    for (int i = first; i < last; i++) {
+                        if (!isPromoted(i)) {
+                            promote(loading, i);
+                        }
+                    }
+                }
+            }
+            snapshot = null;
+            loading.close();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ошибка загрузки снимка: " + e.getMessage());
+        } finally {
+            snapshotLoaded.countDown();
+        }
+    }
+
+    /** Copies snapshot record {@code index} into the store; called under snapshotLock. */
+    private int promote(LinkSnapshot loading, int index) {
+        promoted[index >>> 6] |= 1L << index;
+        ShortLink link;
+        try {
+            link = loading.read(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long code = link.getCode();
+        String userId = link.getUserId();
+        int slot = storage.allocate(code, link.getLongUrl(), userId, link.getClickLimit(),
+                link.getCreationMillis(), link.getExpiryMillis());
+        storage.restoreClicks(slot, code, link.getClickCount());
+        userLinks.add(userId, slot);
+        linkIndex.put(code, slot);
+        scheduleExpiry(code, link.getExpiryMillis());
+        return slot;
     }
 
-    private void scheduleExpiry(String shortCode, String userId) {
-        scheduler.schedule(() -> {
-            ShortLink link = linkStore.get(shortCode);
-            if (link != null && link.isExpired()) {
-                notificationService.notifyExpiry(userId, shortCode);
-                deleteLink(shortCode, userId);
+    private boolean isPromoted(int index) {
+        return (promoted[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void awaitSnapshotLoaded() {
+        try {
+            snapshotLoaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание загрузки снимка прервано", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of all links to the snapshot file. Clicks and deletions may go on
+     * meanwhile; the log tail after the recorded position covers whatever the snapshot missed.
+     */
+    public void writeSnapshot() throws IOException {
+        if (snapshotFile == null) {
+            throw new IllegalStateException("Файл снимка не задан");
+        }
+        awaitSnapshotLoaded();
+        // Every creation and deletion logged before this position is visible in the index
+        long position = wal.position();
+        long[][] codes = {new long[Math.max(16, linkIndex.size())]};
+        int[] count = {0};
+        linkIndex.forEach((code, slot) -> {
+            if (count[0] == codes[0].length) {
+                codes[0] = Arrays.copyOf(codes[0], codes[0].length << 1);
             }
-        }, LIFETIME, TimeUnit.HOURS);
+            codes[0][count[0]++] = code;
+        });
+        long[] sorted = Arrays.copyOf(codes[0], count[0]);
+        Arrays.sort(sorted);
+        LinkSnapshot.write(snapshotFile, wal.generatorKey(), position, sorted, code -> {
+            int slot = findSlot(code);
+            ShortLink link = slot == LinkIndex.NOT_FOUND ? null : storage.view(slot);
+            return link != null && link.getCode() == code ? link : null;
+        });
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            writeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ошибка записи снимка: " + e.getMessage());
+        }
+    }
+
+    private int clickCountOf(long code) {
+        int slot = findSlot(code);
+        return slot == LinkIndex.NOT_FOUND ? -1 : storage.clickCount(slot);
+    }
+
+    private long expiryOf(long code) {
+        int slot = findSlot(code);
+        return slot == LinkIndex.NOT_FOUND ? ExpiryWheel.GONE : storage.expiryMillis(slot);
+    }
+
+    /**
+     * Rejects URLs with control characters: the redirect servers echo the URL into a
+     * {@code Location} header, where a CR or LF would end the header early. Tab is the one
+     * control character a header value may hold.
+     */
+    static void checkUrl(String longUrl) {
+        if (longUrl == null) {
+            throw new IllegalArgumentException("URL не задан");
+        }
+        for (int i = 0; i < longUrl.length(); i++) {
+            char c = longUrl.charAt(i);
+            if (c < ' ' && c != '\t' || c == 0x7F) {
+                throw new IllegalArgumentException("URL содержит управляющие символы");
+            }
+        }
+    }
+
+    /**
+     * Canonical lowercase form of a user id. Links are listed under it because the storage
+     * keeps the parsed UUID, and deletions find the list through that.
+     */
+    static String canonicalUserId(String userId) {
+        return UUID.fromString(userId).toString();
     }
 
-    private String generateUniqueShortCode(String userId) {
-        String shortCode;
-        do {
-            String base = userId.substring(0, 8) + System.currentTimeMillis();
-            shortCode = generateShortCode(base);
+    /** Key of the user's list in {@link UserLinkIndex}; an id that is no UUID owns no links. */
+    private static String indexedUserId(String userId) {
+        try {
+            return canonicalUserId(userId);
+        } catch (IllegalArgumentException e) {
+            return userId;
+        }
+    }
+
+    /** A link is deleted by the click that reaches its limit, so a limit below one would never be. */
+    private static void checkClickLimit(int clickLimit) {
+        if (clickLimit <= 0) {
+            throw new IllegalArgumentException("Лимит переходов должен быть положительным");
         }
-        while (linkStore.containsKey(shortCode));
-        return  shortCode;
     }
 
-    private String generateShortCode(String input) {
-        int hash = input.hashCode();
-        StringBuilder sb = new StringBuilder();
-        String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static void checkTtl(Duration ttl) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero() || ttl.compareTo(MAX_TTL) > 0) {
+            throw new IllegalArgumentException("Время жизни ссылки должно быть от 1 мс до " + MAX_TTL.toDays() + " дней");
+        }
+    }
 
-        for (int i = 0; i < 8; i++) {
-            hash = Math.abs(hash);
-            sb.append(chars.charAt(hash % chars.length()));
-            hash = hash / chars.length() + (int) (Math.random() * 1000);
+    private void scheduleExpiry(long code, long expiryMillis) {
+        // Lazy expiry keeps no per-link state, the sweeper finds the link in the storage
+        if (expiryWheel != null) {
+            expiryWheel.add(code, expiryMillis);
         }
+    }
+
+    private void expireBatch(long[] due, int count) {
+        expireCodes(due, count);
+    }
 
-        return sb.toString();
+    /** Removes the links of {@code codes[0..count)} that are expired and notifies their owners. */
+    private int expireCodes(long[] codes, int count) {
+        long now = CoarseClock.millis();
+        List<ShortLink> expired = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long code = codes[i];
+            // Links already removed by a click limit are skipped here (lazy cancellation)
+            int slot = findSlot(code);
+            if (slot != LinkIndex.NOT_FOUND && now > storage.expiryMillis(slot) && storage.tryClaim(slot, code)) {
+                ShortLink link = storage.view(slot);
+                deleteLink(code, slot);
+                if (link != null) {
+                    expired.add(link);
+                }
+            }
+        }
+        if (!expired.isEmpty()) {
+            notificationService.notifyExpiry(expired);
+        }
+        return expired.size();
     }
 
     public void shutdown() {
+        if (expirySweeper != null) {
+            expirySweeper.close();
+        }
         scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -275,22 +1166,55 @@ class ShortLinkService {
         } catch (InterruptedException e) {
             scheduler.shutdownNow();
         }
+        if (wal != null) {
+            clickCoalescer.close();
+            try {
+                wal.close();
+            } catch (IOException e) {
+                System.out.println("Ошибка закрытия журнала: " + e.getMessage());
+            }
+        }
+        // Last, so that the notifications of the final expiries and clicks are delivered
+        notificationService.close();
     }
 }
 
 // ==================== Domain Model ====================
 
+/**
+ * Compact link record: the code in {@link ShortCode} form, the owner UUID as two longs
+ * and epoch-millis timestamps. Text and date-time forms are derived on demand.
+ * <p>
+ * The click count is updated lock-free. Its sign bit marks a link claimed for removal,
+ * after which no more clicks are accepted.
+ */
 class ShortLink {
-    private final String shortCode;
+    private static final VarHandle CLICK_COUNT;
+    private static final int CLAIMED = 0x8000_0000;
+
+    static {
+        try {
+            CLICK_COUNT = MethodHandles.lookup().findVarHandle(ShortLink.class, "clickCount", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long code;
     private final String longUrl;
-    private final String userId;
+    private final long userIdMsb;
+    private final long userIdLsb;
     private final int clickLimit;
-    private int clickCount;
-    private  final LocalDateTime creationTime;
-    private final LocalDateTime expiryTime;
+    private volatile int clickCount;
+    private final long creationMillis;
+    private final long expiryMillis;
+
+    public long getCode() {
+        return code;
+    }
 
     public String getShortCode() {
-        return shortCode;
+        return ShortCode.decode(code);
     }
 
     public String getLongUrl() {
@@ -298,7 +1222,15 @@ class ShortLink {
     }
 
     public String getUserId() {
-        return userId;
+        return new UUID(userIdMsb, userIdLsb).toString();
+    }
+
+    public long getUserIdMsb() {
+        return userIdMsb;
+    }
+
+    public long getUserIdLsb() {
+        return userIdLsb;
     }
 
     public int getClickLimit() {
@@ -306,33 +1238,102 @@ class ShortLink {
     }
 
     public int getClickCount() {
-        return clickCount;
+        return clickCount & ~CLAIMED;
+    }
+
+    public long getCreationMillis() {
+        return creationMillis;
+    }
+
+    public long getExpiryMillis() {
+        return expiryMillis;
     }
 
     public LocalDateTime getCreationTime() {
-        return creationTime;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(creationMillis), ZoneId.systemDefault());
     }
 
     public LocalDateTime getExpiryTime() {
-        return expiryTime;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(expiryMillis), ZoneId.systemDefault());
     }
 
+    /**
+     * @param shortCode 8-char base62 code
+     * @param userId    UUID of the owner
+     */
     public ShortLink(String shortCode, String longUrl, String userId, int clickLimit, LocalDateTime expiryTime) {
-        this.shortCode = shortCode;
+        this(parseCode(shortCode), longUrl, UUID.fromString(userId), clickLimit, 0, System.currentTimeMillis(),
+                expiryTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    ShortLink(long code, String longUrl, UUID userId, int clickLimit, int clickCount,
+              long creationMillis, long expiryMillis) {
+        this.code = code;
         this.longUrl = longUrl;
-        this.userId = userId;
+        this.userIdMsb = userId.getMostSignificantBits();
+        this.userIdLsb = userId.getLeastSignificantBits();
         this.clickLimit = clickLimit;
-        this.clickCount = 0;
-        this.creationTime = LocalDateTime.now();
-        this.expiryTime = expiryTime;
+        this.clickCount = clickCount;
+        this.creationMillis = creationMillis;
+        this.expiryMillis = expiryMillis;
+    }
+
+    public void incrementClick() {
+        CLICK_COUNT.getAndAdd(this, 1);
+    }
+
+    /** See {@link LinkStorage#tryClick(int, long)}. */
+    int tryClick() {
+        while (true) {
+            int count = clickCount;
+            if (count < 0) {
+                return LinkStorage.LINK_GONE;
+            }
+            if (count >= clickLimit) {
+                return LinkStorage.CLICKS_EXHAUSTED;
+            }
+            if (CLICK_COUNT.compareAndSet(this, count, count + 1)) {
+                return count + 1;
+            }
+        }
     }
 
-    public synchronized void incrementClick() {
-        this.clickCount++;
+    /** See {@link LinkStorage#restoreClicks(int, long, int)}. */
+    void restoreClicks(int count) {
+        while (true) {
+            int current = clickCount;
+            if (current < 0 || current >= count) {
+                return;
+            }
+            if (CLICK_COUNT.compareAndSet(this, current, count)) {
+                return;
+            }
+        }
+    }
+
+    /** See {@link LinkStorage#tryClaim(int, long)}. */
+    boolean tryClaim() {
+        while (true) {
+            int count = clickCount;
+            if (count < 0 || count >= clickLimit) {
+                return false;
+            }
+            if (CLICK_COUNT.compareAndSet(this, count, count | CLAIMED)) {
+                return true;
+            }
+        }
     }
 
     public boolean isExpired() {
-        return LocalDateTime.now().isAfter(expiryTime);
+        return CoarseClock.millis() > expiryMillis;
+    }
+
+    private static long parseCode(String shortCode) {
+        long code = ShortCode.encode(shortCode);
+        if (code == ShortCode.INVALID) {
+            throw new IllegalArgumentException("Некорректный короткий код: " + shortCode);
+        }
+        return code;
     }
 }
 
@@ -349,4 +1350,21 @@ class NotificationService {
         System.out.println("\n[ОПОВЕЩЕНИЕ] Ссылка устарела: " + shortCode);
         System.out.println("Время работы ссылки истекло. Ссылка удалена.\n");
     }
+
+    public void notifyExpiry(List<ShortLink> links) {
+        if (links.size() == 1) {
+            notifyExpiry(links.get(0).getUserId(), links.get(0).getShortCode());
+            return;
+        }
+        StringBuilder sb = new StringBuilder("\n[ОПОВЕЩЕНИЕ] Устарели ссылки (" + links.size() + "):");
+        for (ShortLink link : links) {
+            sb.append(' ').append(link.getShortCode());
+        }
+        System.out.println(sb);
+        System.out.println("Время работы ссылок истекло. Ссылки удалены.\n");
+    }
+
+    /** Releases the resources of the service; called once by {@link ShortLinkService#shutdown()}. */
+    public void close() {
+    }
 }
\ No newline at end of file
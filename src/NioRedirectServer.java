@@ -0,0 +1,456 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// ==================== NIO Redirect Server ====================
+
+/**
+ * Non-blocking HTTP/1.1 front end for {@link ShortLinkService} with the same answers as
+ * {@link RedirectServer}, served by a few selector threads instead of a thread per request.
+ * <p>
+ * Connections are kept alive and may pipeline: every complete request in the read buffer
+ * is answered in order, and the responses go out in one gathering write. The full 302
+ * response of a link is built once and cached by its code in the event loop; codes are
+ * never reused, so a cached response is valid whenever the click succeeds. A response is
+ * built in a heap buffer and only copied to a direct one when its code is asked for again,
+ * so a long tail of links read once costs no direct memory, which only the GC frees.
+ * <p>
+ * Only bodiless GET requests are understood. Anything else is answered with an error and
+ * the connection is closed, since its body could not be skipped. HEAD is refused too, as
+ * by {@link RedirectServer}: answering it would consume a click of the link.
+ */
+class NioRedirectServer {
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_PIPELINED = 64;
+    private static final int CACHE_BITS = 12;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final ByteBuffer NOT_FOUND = response("404 Not Found", "");
+    private static final ByteBuffer GONE = response("410 Gone", "");
+    private static final ByteBuffer BAD_REQUEST = response("400 Bad Request", "Connection: close\r\n");
+    private static final ByteBuffer NOT_ALLOWED = response("405 Method Not Allowed",
+            "Allow: GET\r\nConnection: close\r\n");
+    private static final ByteBuffer TOO_LARGE = response("431 Request Header Fields Too Large",
+            "Connection: close\r\n");
+
+    private static final byte[] GET = ascii("GET ");
+    private static final byte[] HTTP_1_0 = ascii("HTTP/1.0");
+    private static final byte[] CONNECTION_CLOSE = ascii("\nconnection: close");
+    private static final byte[] CONTENT_LENGTH = ascii("\ncontent-length:");
+    private static final byte[] TRANSFER_ENCODING = ascii("\ntransfer-encoding:");
+
+    private final ShortLinkService service;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private int nextLoop;
+
+    NioRedirectServer(ShortLinkService service, int port) throws IOException {
+        this(service, port, Runtime.getRuntime().availableProcessors());
+    }
+
+    NioRedirectServer(ShortLinkService service, int port, int eventLoops) throws IOException {
+        this.service = service;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+        this.loops = new EventLoop[Math.max(1, eventLoops)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        // The first loop also accepts, and deals connections out round-robin
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public void start() {
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void stop() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        for (EventLoop loop : loops) {
+            loop.running = false;
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            EventLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            loop.adopt(channel);
+        }
+    }
+
+    /** Per-connection state, only touched by the owning event loop. */
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        final ByteBuffer[] out = new ByteBuffer[MAX_PIPELINED];
+        int outStart;
+        int outCount;
+        /** Where the search for the end of the next request resumes. */
+        int scanFrom;
+        /** Set by a request that must be the last one on this connection. */
+        boolean closing;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<SocketChannel> adopted = new ConcurrentLinkedQueue<>();
+        volatile boolean running = true;
+        // Direct-mapped cache of 302 responses by code
+        final long[] cachedCodes = new long[1 << CACHE_BITS];
+        final ByteBuffer[] cachedResponses = new ByteBuffer[1 << CACHE_BITS];
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "redirect-loop-" + index);
+        }
+
+        void adopt(SocketChannel channel) {
+            adopted.add(channel);
+            // Also when called by this loop's own accept, so the next select returns at once
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = adopted.poll()) != null) {
+                        register(channel);
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handle(key);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // Loop is gone, connections are closed below
+            } finally {
+                SocketChannel channel;
+                while ((channel = adopted.poll()) != null) {
+                    closeQuietly(channel);
+                }
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key.channel());
+                }
+                closeQuietly(selector);
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                try {
+                    accept();
+                } catch (IOException e) {
+                    // A failed accept only loses that connection
+                }
+                return;
+            }
+            Connection c = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    if (c.channel.read(c.in) < 0) {
+                        close(key);
+                        return;
+                    }
+                }
+                serve(key, c);
+            } catch (IOException e) {
+                close(key);
+            }
+        }
+
+        /** Answers buffered requests until the buffer runs dry or the socket stops taking writes. */
+        private void serve(SelectionKey key, Connection c) throws IOException {
+            while (true) {
+                boolean more = parse(c);
+                if (!flush(c)) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (c.closing) {
+                    close(key);
+                    return;
+                }
+                if (!more) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Queues a response for every complete request in the read buffer and compacts it.
+         *
+         * @return true if requests were left over because the output queue is full
+         */
+        private boolean parse(Connection c) {
+            byte[] buf = c.in.array();
+            int limit = c.in.position();
+            int start = 0;
+            boolean more = false;
+            while (!c.closing) {
+                int end = headersEnd(buf, Math.max(start, c.scanFrom), limit);
+                if (end < 0) {
+                    c.scanFrom = Math.max(start, limit - 3);
+                    if (start == 0 && limit == buf.length) {
+                        c.out[c.outCount++] = TOO_LARGE.duplicate();
+                        c.closing = true;
+                    }
+                    break;
+                }
+                if (c.outCount == MAX_PIPELINED) {
+                    more = true;
+                    break;
+                }
+                c.out[c.outCount++] = respond(c, buf, start, end);
+                start = end;
+            }
+            if (start > 0) {
+                System.arraycopy(buf, start, buf, 0, limit - start);
+                c.in.position(limit - start);
+                c.scanFrom = Math.max(0, c.scanFrom - start);
+            }
+            return more;
+        }
+
+        /** Gathering write of the queued responses; true once all of them are out. */
+        private boolean flush(Connection c) throws IOException {
+            if (c.outStart == c.outCount) {
+                return true;
+            }
+            c.channel.write(c.out, c.outStart, c.outCount - c.outStart);
+            while (c.outStart < c.outCount && !c.out[c.outStart].hasRemaining()) {
+                c.out[c.outStart++] = null;
+            }
+            if (c.outStart < c.outCount) {
+                return false;
+            }
+            c.outStart = 0;
+            c.outCount = 0;
+            return true;
+        }
+
+        /** Response to the request in {@code buf[start, end)}, headers included. */
+        private ByteBuffer respond(Connection c, byte[] buf, int start, int end) {
+            if (!startsWith(buf, start, end, GET)) {
+                c.closing = true;
+                return NOT_ALLOWED.duplicate();
+            }
+            int target = start + GET.length;
+            if (hasBody(buf, start, end)) {
+                c.closing = true;
+                return BAD_REQUEST.duplicate();
+            }
+            int lineEnd = indexOf(buf, start, end, (byte) '\r');
+            if (startsWith(buf, lineEnd - HTTP_1_0.length, lineEnd, HTTP_1_0)
+                    || indexOfIgnoreCase(buf, lineEnd, end, CONNECTION_CLOSE) >= 0) {
+                c.closing = true;
+            }
+
+            // "/" followed by exactly one code, then the end of the path
+            int codeEnd = target + 1 + ShortCode.LENGTH;
+            long code = ShortCode.INVALID;
+            if (codeEnd < lineEnd && buf[target] == '/' && (buf[codeEnd] == ' ' || buf[codeEnd] == '?')) {
+                code = ShortCode.encode(buf, target + 1);
+            }
+            ClickResult result = service.click(code);
+            switch (result.getStatus()) {
+                case OK:
+                    return redirect(code, result.getLongUrl());
+                case EXPIRED:
+                case EXHAUSTED:
+                    return GONE.duplicate();
+                default:
+                    return NOT_FOUND.duplicate();
+            }
+        }
+
+        private ByteBuffer redirect(long code, String longUrl) {
+            int i = (int) ((code * 0x9E3779B97F4A7C15L) >>> (64 - CACHE_BITS));
+            ByteBuffer cached = cachedResponses[i];
+            if (cached == null || cachedCodes[i] != code) {
+                cached = ByteBuffer.wrap(responseBytes("302 Found", "Location: " + headerValue(longUrl) + "\r\n"));
+                cachedCodes[i] = code;
+                cachedResponses[i] = cached;
+            } else if (!cached.isDirect()) {
+                cached = ByteBuffer.allocateDirect(cached.capacity()).put(cached.duplicate()).flip();
+                cachedResponses[i] = cached;
+            }
+            return cached.duplicate();
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            closeQuietly(key.channel());
+        }
+    }
+
+    /** Index just past the blank line ending the headers in {@code buf[from, limit)}, or -1. */
+    private static int headersEnd(byte[] buf, int from, int limit) {
+        for (int i = from; i + 3 < limit; i++) {
+            if (buf[i + 3] == '\n' && buf[i] == '\r' && buf[i + 1] == '\n' && buf[i + 2] == '\r') {
+                return i + 4;
+            }
+        }
+        return -1;
+    }
+
+    /** Whether the request announces a body; some clients send {@code Content-Length: 0} on a GET. */
+    private static boolean hasBody(byte[] buf, int start, int end) {
+        if (indexOfIgnoreCase(buf, start, end, TRANSFER_ENCODING) >= 0) {
+            return true;
+        }
+        int header = indexOfIgnoreCase(buf, start, end, CONTENT_LENGTH);
+        if (header < 0) {
+            return false;
+        }
+        int i = header + CONTENT_LENGTH.length;
+        while (buf[i] == ' ' || buf[i] == '\t') {
+            i++;
+        }
+        int digits = i;
+        while (buf[i] == '0') {
+            i++;
+        }
+        boolean zero = i > digits;
+        while (buf[i] == ' ' || buf[i] == '\t') {
+            i++;
+        }
+        return !zero || buf[i] != '\r';
+    }
+
+    private static boolean startsWith(byte[] buf, int from, int limit, byte[] prefix) {
+        if (from < 0 || limit - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] buf, int from, int limit, byte b) {
+        for (int i = from; i < limit; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /** Finds {@code lowerCase}, which must be lower case ASCII, in {@code buf[from, limit)} ignoring case. */
+    private static int indexOfIgnoreCase(byte[] buf, int from, int limit, byte[] lowerCase) {
+        outer:
+        for (int i = from; i + lowerCase.length <= limit; i++) {
+            for (int j = 0; j < lowerCase.length; j++) {
+                int b = buf[i + j];
+                if (b >= 'A' && b <= 'Z') {
+                    b += 'a' - 'A';
+                }
+                if (b != lowerCase[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * {@code url} with control characters percent-encoded. New links cannot contain them, but
+     * a log or snapshot written before that check was added still can, and a raw CR or LF
+     * would split the response.
+     */
+    private static String headerValue(String url) {
+        StringBuilder encoded = null;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c < ' ' && c != '\t' || c == 0x7F) {
+                if (encoded == null) {
+                    encoded = new StringBuilder(url.length() + 8).append(url, 0, i);
+                }
+                encoded.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            } else if (encoded != null) {
+                encoded.append(c);
+            }
+        }
+        return encoded == null ? url : encoded.toString();
+    }
+
+    /** Complete bodiless response, in a direct buffer that callers only ever duplicate. */
+    private static ByteBuffer response(String status, String headers) {
+        byte[] bytes = responseBytes(status, headers);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    private static byte[] responseBytes(String status, String headers) {
+        return ("HTTP/1.1 " + status + "\r\n" + headers + "Content-Length: 0\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+    }
+}
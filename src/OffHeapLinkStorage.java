@@ -0,0 +1,263 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+// ==================== Off-Heap Link Storage ====================
+
+/**
+ * {@link LinkStorage} that keeps link records outside the Java heap, in direct buffers.
+ * <p>
+ * Every slot is a fixed {@value #RECORD_SIZE}-byte record:
+ * <pre>
+ *  0 code          long   ShortCode value, INVALID while the slot is free
+ *  8 userId msb    long
+ * 16 userId lsb    long
+ * 24 click state   long   generation (high 32 bits) and click count (low 32 bits)
+ * 32 creation      long   epoch millis
+ * 40 expiry        long   epoch millis
+ * 48 url ref       long   arena chunk (high 32 bits) and position (low 32 bits)
+ * 56 clickLimit    int
+ * 60 url capacity  int    bytes reserved in the arena for this slot
+ * </pre>
+ * URLs are appended, behind a 4-byte length, to a bump-allocated arena of direct chunks.
+ * A reused slot keeps its arena space when the new URL fits; otherwise the old bytes
+ * are abandoned. The code is written last with release semantics, so a reader that
+ * sees its code sees the whole record. User ids must be UUIDs.
+ * <p>
+ * Clicks are counted with a CAS on the click state word. Every allocation of a slot
+ * bumps the generation, so a CAS prepared against a previous occupant of the slot fails
+ * even if the count happens to match. The sign bit of the count marks a claimed link.
+ */
+class OffHeapLinkStorage implements LinkStorage {
+    static final int RECORD_SIZE = 64;
+    private static final int CODE = 0;
+    private static final int USER_MSB = 8;
+    private static final int USER_LSB = 16;
+    private static final int CLICK_STATE = 24;
+    private static final int CREATION = 32;
+    private static final int EXPIRY = 40;
+    private static final int URL_REF = 48;
+    private static final int CLICK_LIMIT = 56;
+    private static final int URL_CAPACITY = 60;
+    private static final long CLAIMED = 0x8000_0000L;
+    private static final long COUNT_MASK = 0x7FFF_FFFFL;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final int PAGE_BITS = 14;
+    private static final int PAGE_SLOTS = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SLOTS - 1;
+    private static final int ARENA_CHUNK_SIZE = 4 << 20;
+
+    private final SlotAllocator slots = new SlotAllocator();
+    private final Object arenaLock = new Object();
+    private volatile ByteBuffer[] pages = new ByteBuffer[0];
+    private volatile ByteBuffer[] arena = new ByteBuffer[0];
+    private int arenaPosition = ARENA_CHUNK_SIZE;
+
+    @Override
+    public int allocate(long code, String longUrl, UUID user, int clickLimit, long creationMillis, long expiryMillis) {
+        byte[] url = longUrl.getBytes(StandardCharsets.UTF_8);
+        int slot = slots.acquire();
+        ByteBuffer page = pageFor(slot);
+        int base = offset(slot);
+
+        long urlRef;
+        int capacity = page.getInt(base + URL_CAPACITY);
+        if (capacity >= Integer.BYTES + url.length) {
+            urlRef = page.getLong(base + URL_REF);
+        } else {
+            capacity = Integer.BYTES + url.length;
+            urlRef = reserveUrl(capacity);
+        }
+        ByteBuffer chunk = arena[(int) (urlRef >>> 32)];
+        chunk.putInt((int) urlRef, url.length);
+        chunk.put((int) urlRef + Integer.BYTES, url);
+
+        long generation = (page.getLong(base + CLICK_STATE) >>> 32) + 1;
+        page.putLong(base + USER_MSB, user.getMostSignificantBits());
+        page.putLong(base + USER_LSB, user.getLeastSignificantBits());
+        page.putLong(base + CLICK_STATE, generation << 32);
+        page.putInt(base + CLICK_LIMIT, clickLimit);
+        page.putLong(base + CREATION, creationMillis);
+        page.putLong(base + EXPIRY, expiryMillis);
+        page.putLong(base + URL_REF, urlRef);
+        page.putInt(base + URL_CAPACITY, capacity);
+        LONGS.setRelease(page, base + CODE, code);
+        return slot;
+    }
+
+    @Override
+    public void release(int slot) {
+        LONGS.setRelease(page(slot), offset(slot) + CODE, ShortCode.INVALID);
+        slots.release(slot);
+    }
+
+    @Override
+    public long code(int slot) {
+        ByteBuffer[] p = pages;
+        int page = slot >>> PAGE_BITS;
+        if (slot < 0 || page >= p.length) {
+            return ShortCode.INVALID;
+        }
+        return (long) LONGS.getAcquire(p[page], offset(slot) + CODE);
+    }
+
+    @Override
+    public String longUrl(int slot) {
+        ByteBuffer page = page(slot);
+        int base = offset(slot);
+        long urlRef = page.getLong(base + URL_REF);
+        ByteBuffer chunk = arena[(int) (urlRef >>> 32)];
+        byte[] url = new byte[chunk.getInt((int) urlRef)];
+        chunk.get((int) urlRef + Integer.BYTES, url);
+        return new String(url, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String userId(int slot) {
+        ByteBuffer page = page(slot);
+        int base = offset(slot);
+        return new UUID(page.getLong(base + USER_MSB), page.getLong(base + USER_LSB)).toString();
+    }
+
+    @Override
+    public int clickLimit(int slot) {
+        return page(slot).getInt(offset(slot) + CLICK_LIMIT);
+    }
+
+    @Override
+    public int clickCount(int slot) {
+        return (int) ((long) LONGS.getVolatile(page(slot), offset(slot) + CLICK_STATE) & COUNT_MASK);
+    }
+
+    @Override
+    public int tryClick(int slot, long code) {
+        ByteBuffer page = page(slot);
+        int base = offset(slot);
+        while (true) {
+            long state = (long) LONGS.getVolatile(page, base + CLICK_STATE);
+            if ((long) LONGS.getAcquire(page, base + CODE) != code || (state & CLAIMED) != 0) {
+                return LINK_GONE;
+            }
+            int count = (int) (state & COUNT_MASK);
+            if (count >= page.getInt(base + CLICK_LIMIT)) {
+                return CLICKS_EXHAUSTED;
+            }
+            if (LONGS.compareAndSet(page, base + CLICK_STATE, state, state + 1)) {
+                return count + 1;
+            }
+        }
+    }
+
+    @Override
+    public boolean tryClaim(int slot, long code) {
+        ByteBuffer page = page(slot);
+        int base = offset(slot);
+        while (true) {
+            long state = (long) LONGS.getVolatile(page, base + CLICK_STATE);
+            if ((long) LONGS.getAcquire(page, base + CODE) != code || (state & CLAIMED) != 0
+                    || (state & COUNT_MASK) >= page.getInt(base + CLICK_LIMIT)) {
+                return false;
+            }
+            if (LONGS.compareAndSet(page, base + CLICK_STATE, state, state | CLAIMED)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void restoreClicks(int slot, long code, int clickCount) {
+        ByteBuffer page = page(slot);
+        int base = offset(slot);
+        while (true) {
+            long state = (long) LONGS.getVolatile(page, base + CLICK_STATE);
+            if ((long) LONGS.getAcquire(page, base + CODE) != code || (state & CLAIMED) != 0
+                    || (state & COUNT_MASK) >= clickCount) {
+                return;
+            }
+            if (LONGS.compareAndSet(page, base + CLICK_STATE, state, (state & ~COUNT_MASK) | clickCount)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public long expiryMillis(int slot) {
+        return page(slot).getLong(offset(slot) + EXPIRY);
+    }
+
+    @Override
+    public ShortLink view(int slot) {
+        ByteBuffer page = page(slot);
+        int base = offset(slot);
+        long code = code(slot);
+        ShortLink link = new ShortLink(code, longUrl(slot),
+                new UUID(page.getLong(base + USER_MSB), page.getLong(base + USER_LSB)),
+                clickLimit(slot), clickCount(slot), page.getLong(base + CREATION), page.getLong(base + EXPIRY));
+        // Discard the copy if the slot was released and reused while it was read
+        return code(slot) == code ? link : null;
+    }
+
+    @Override
+    public int slotCount() {
+        return slots.highWater();
+    }
+
+    /** Bytes of direct memory reserved for records and URLs. */
+    public long offHeapBytes() {
+        return (long) pages.length * PAGE_SLOTS * RECORD_SIZE + (long) arena.length * ARENA_CHUNK_SIZE;
+    }
+
+    private long reserveUrl(int length) {
+        synchronized (arenaLock) {
+            ByteBuffer[] chunks = arena;
+            if (length > ARENA_CHUNK_SIZE - arenaPosition || chunks.length == 0) {
+                ByteBuffer[] grown = new ByteBuffer[chunks.length + 1];
+                System.arraycopy(chunks, 0, grown, 0, chunks.length);
+                grown[chunks.length] = ByteBuffer.allocateDirect(Math.max(ARENA_CHUNK_SIZE, length));
+                arena = grown;
+                chunks = grown;
+                arenaPosition = 0;
+            }
+            long urlRef = ((long) (chunks.length - 1) << 32) | arenaPosition;
+            arenaPosition += length;
+            return urlRef;
+        }
+    }
+
+    private ByteBuffer page(int slot) {
+        return pages[slot >>> PAGE_BITS];
+    }
+
+    private ByteBuffer pageFor(int slot) {
+        int page = slot >>> PAGE_BITS;
+        ByteBuffer[] p = pages;
+        if (page < p.length) {
+            return p[page];
+        }
+        synchronized (this) {
+            p = pages;
+            if (page >= p.length) {
+                ByteBuffer[] grown = new ByteBuffer[page + 1];
+                System.arraycopy(p, 0, grown, 0, p.length);
+                for (int i = p.length; i <= page; i++) {
+                    grown[i] = ByteBuffer.allocateDirect(PAGE_SLOTS * RECORD_SIZE).order(ByteOrder.nativeOrder());
+                    for (int s = 0; s < PAGE_SLOTS; s++) {
+                        grown[i].putLong(s * RECORD_SIZE + CODE, ShortCode.INVALID);
+                    }
+                }
+                pages = grown;
+                p = grown;
+            }
+            return p[page];
+        }
+    }
+
+    private static int offset(int slot) {
+        return (slot & PAGE_MASK) * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,88 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// ==================== Redirect Server ====================
+
+/**
+ * Embedded HTTP front end for {@link ShortLinkService}: {@code GET /{code}} answers
+ * 302 with a {@code Location} header, 404 for unknown codes and 410 for expired or
+ * exhausted links. Each request runs on its own virtual thread when the runtime has
+ * them (JDK 21+); on older runtimes a fixed pool of platform threads is used.
+ */
+class RedirectServer {
+    private static final int BACKLOG = 1024;
+
+    private final ShortLinkService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    RedirectServer(ShortLinkService service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = newRequestExecutor();
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // A GET has no body, but the connection is only kept alive once the body stream hit EOF
+            exchange.getRequestBody().close();
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            // "/" followed by exactly one code, no regex or substring
+            String path = exchange.getRequestURI().getRawPath();
+            long code = path.length() == ShortCode.LENGTH + 1 ? ShortCode.encode(path, 1) : ShortCode.INVALID;
+            ClickResult result = service.click(code);
+            switch (result.getStatus()) {
+                case OK:
+                    exchange.getResponseHeaders().set("Location", result.getLongUrl());
+                    exchange.sendResponseHeaders(302, -1);
+                    break;
+                case EXPIRED:
+                case EXHAUSTED:
+                    exchange.sendResponseHeaders(410, -1);
+                    break;
+                default:
+                    exchange.sendResponseHeaders(404, -1);
+            }
+        }
+    }
+
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// ==================== Short Code Codec ====================
+
+/**
+ * Base62 codec between the 8-char textual short code and its numeric form.
+ * An 8-char code is a number in {@code [0, 62^8)}, which fits in 48 bits; the first
+ * character is the most significant digit. Encoding uses a lookup table and allocates
+ * nothing, so callers can key their indexes on the {@code long} form.
+ */
+final class ShortCode {
+    static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    static final int LENGTH = 8;
+    static final long SPACE = 218_340_105_584_896L; // 62^8
+    /** Returned by the encoders for anything that is not a valid short code. */
+    static final long INVALID = -1;
+
+    private static final byte[] DIGITS = ALPHABET.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            VALUES[DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private ShortCode() {
+    }
+
+    public static long encode(CharSequence code) {
+        if (code == null || code.length() != LENGTH) {
+            return INVALID;
+        }
+        return encode(code, 0);
+    }
+
+    /** Encodes the {@code LENGTH} characters starting at {@code offset}, e.g. inside a request path. */
+    public static long encode(CharSequence text, int offset) {
+        if (offset < 0 || offset + LENGTH > text.length()) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = text.charAt(offset + i);
+            int digit = c < 128 ? VALUES[c] : -1;
+            if (digit < 0) {
+                return INVALID;
+            }
+            value = value * 62 + digit;
+        }
+        return value;
+    }
+
+    /** Encodes {@code LENGTH} ASCII bytes starting at {@code offset}, e.g. straight from a request buffer. */
+    public static long encode(byte[] src, int offset) {
+        if (offset < 0 || offset + LENGTH > src.length) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int b = src[offset + i];
+            int digit = b >= 0 ? VALUES[b] : -1;
+            if (digit < 0) {
+                return INVALID;
+            }
+            value = value * 62 + digit;
+        }
+        return value;
+    }
+
+    public static String decode(long value) {
+        byte[] bytes = new byte[LENGTH];
+        decode(value, bytes, 0);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /** Writes the {@code LENGTH} ASCII characters of {@code value} into {@code dst}. */
+    public static void decode(long value, byte[] dst, int offset) {
+        if (value < 0 || value >= SPACE) {
+            throw new IllegalArgumentException("Некорректный короткий код: " + value);
+        }
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            dst[offset + i] = DIGITS[(int) (value % 62)];
+            value /= 62;
+        }
+    }
+}
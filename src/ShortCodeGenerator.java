@@ -0,0 +1,139 @@
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ==================== Short Code Generation ====================
+
+/**
+ * Source of short codes for {@link ShortLinkService}, in the numeric form of {@link ShortCode}.
+ * Implementations must never return the same code twice for the lifetime of the generator.
+ */
+interface ShortCodeGenerator {
+    long next();
+
+    /** Fills {@code codes[0..count)} with fresh codes. */
+    default void next(long[] codes, int count) {
+        for (int i = 0; i < count; i++) {
+            codes[i] = next();
+        }
+    }
+
+    /** Records that {@code code} was issued before a restart, so {@link #next()} never returns it. */
+    default void markUsed(long code) {
+    }
+}
+
+/**
+ * Counter-based generator: every thread reserves a block of a monotonic sequence and
+ * each sequence number is scrambled by a keyed Feistel permutation into the
+ * numeric form of an 8-char base62 code. The permutation is a bijection on
+ * {@code [0, 62^8)}, so codes are unique by construction and consecutive codes
+ * are not predictable without the key.
+ */
+class FeistelShortCodeGenerator implements ShortCodeGenerator {
+    static final long CODE_SPACE = ShortCode.SPACE;
+    private static final int BLOCK_SIZE = 1024;
+    private static final int HALF_BITS = 24;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+
+    private final int[] roundKeys;
+    private final AtomicLong sequence;
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[]{0, 0});
+
+    public FeistelShortCodeGenerator() {
+        this(new SecureRandom().nextLong(), 0);
+    }
+
+    public FeistelShortCodeGenerator(long key, long startSequence) {
+        this.roundKeys = new int[ROUNDS];
+        long k = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            k = mix64(k + 0x9E3779B97F4A7C15L);
+            roundKeys[i] = (int) k;
+        }
+        this.sequence = new AtomicLong(startSequence);
+    }
+
+    @Override
+    public long next() {
+        long[] range = block.get();
+        if (range[0] == range[1]) {
+            long start = sequence.getAndAdd(BLOCK_SIZE);
+            if (start >= CODE_SPACE) {
+                throw new IllegalStateException("Пространство коротких кодов исчерпано");
+            }
+            range[0] = start;
+            range[1] = Math.min(start + BLOCK_SIZE, CODE_SPACE);
+        }
+        return permute(range[0]++);
+    }
+
+    /** Reserves one contiguous range of the sequence for the whole batch. */
+    @Override
+    public void next(long[] codes, int count) {
+        long start = sequence.getAndAdd(count);
+        if (start + count > CODE_SPACE) {
+            throw new IllegalStateException("Пространство коротких кодов исчерпано");
+        }
+        for (int i = 0; i < count; i++) {
+            codes[i] = permute(start + i);
+        }
+    }
+
+    /** Moves the sequence past the one that produced {@code code}; only meaningful for the same key. */
+    @Override
+    public void markUsed(long code) {
+        long used = unpermute(code);
+        sequence.accumulateAndGet(used + 1, Math::max);
+    }
+
+    /** Keyed bijection on {@code [0, 62^8)}: a 48-bit Feistel network with cycle walking. */
+    long permute(long value) {
+        long x = value;
+        do {
+            x = encrypt(x);
+        } while (x >= CODE_SPACE);
+        return x;
+    }
+
+    /** Inverse of {@link #permute(long)}. */
+    long unpermute(long value) {
+        long x = value;
+        do {
+            x = decrypt(x);
+        } while (x >= CODE_SPACE);
+        return x;
+    }
+
+    private long encrypt(long x) {
+        long left = (x >>> HALF_BITS) & HALF_MASK;
+        long right = x & HALF_MASK;
+        for (int i = 0; i < ROUNDS; i++) {
+            long next = left ^ round(right, roundKeys[i]);
+            left = right;
+            right = next;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private long decrypt(long x) {
+        long left = (x >>> HALF_BITS) & HALF_MASK;
+        long right = x & HALF_MASK;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            long prev = right ^ round(left, roundKeys[i]);
+            right = left;
+            left = prev;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private static long round(long half, int key) {
+        return mix64(half ^ ((long) key << 24)) & HALF_MASK;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
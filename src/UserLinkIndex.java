@@ -0,0 +1,250 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ==================== User Link Index ====================
+
+/**
+ * Per-user sets of link slots in creation order, as intrusive doubly-linked lists.
+ * The links are threaded through parallel arrays indexed by storage slot, so add and
+ * remove are O(1) and cost no node objects. Each user chain has its own lock.
+ * <p>
+ * Every entry also gets a sequence number from a global counter. Sequence numbers grow
+ * along each chain, which lets {@link #page} resume after an entry that was removed
+ * in the meantime. Each entry also records its chain, so a slot passed in by a caller,
+ * such as a page token, is only followed within the chain it belongs to.
+ */
+class UserLinkIndex {
+    static final int NONE = -1;
+    private static final int UNLINKED = -2;
+    private static final int PAGE_BITS = 14;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final ConcurrentHashMap<String, Chain> chains = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile int[][] prevPages = new int[0][];
+    private volatile int[][] nextPages = new int[0][];
+    private volatile long[][] seqPages = new long[0][];
+    // Chain of each linked slot, null otherwise; written under that chain's lock
+    private volatile Chain[][] chainPages = new Chain[0][];
+
+    /** Appends {@code slot} to the chain of {@code userId}. */
+    public void add(String userId, int slot) {
+        ensureCapacity(slot);
+        while (true) {
+            Chain chain = chains.computeIfAbsent(userId, k -> new Chain());
+            synchronized (chain) {
+                if (chain.retired) {
+                    continue;
+                }
+                setPrev(slot, chain.tail);
+                setNext(slot, NONE);
+                setSeq(slot, sequence.incrementAndGet());
+                setChain(slot, chain);
+                if (chain.tail == NONE) {
+                    chain.head = slot;
+                } else {
+                    setNext(chain.tail, slot);
+                }
+                chain.tail = slot;
+                chain.size++;
+                return;
+            }
+        }
+    }
+
+    /** Appends {@code slots[from..to)}, in order, to the chain of {@code userId} under one lock. */
+    public void addAll(String userId, int[] slots, int from, int to) {
+        int max = NONE;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, slots[i]);
+        }
+        if (max == NONE) {
+            return;
+        }
+        ensureCapacity(max);
+        while (true) {
+            Chain chain = chains.computeIfAbsent(userId, k -> new Chain());
+            synchronized (chain) {
+                if (chain.retired) {
+                    continue;
+                }
+                long seq = sequence.getAndAdd(to - from);
+                for (int i = from; i < to; i++) {
+                    int slot = slots[i];
+                    setPrev(slot, chain.tail);
+                    setNext(slot, NONE);
+                    setSeq(slot, ++seq);
+                    setChain(slot, chain);
+                    if (chain.tail == NONE) {
+                        chain.head = slot;
+                    } else {
+                        setNext(chain.tail, slot);
+                    }
+                    chain.tail = slot;
+                }
+                chain.size += to - from;
+                return;
+            }
+        }
+    }
+
+    /** Unlinks {@code slot} from the chain of {@code userId}; a slot not in the chain is ignored. */
+    public void remove(String userId, int slot) {
+        Chain chain = chains.get(userId);
+        if (chain == null || slot >= capacity()) {
+            return;
+        }
+        synchronized (chain) {
+            if (chainOf(slot) != chain) {
+                return;
+            }
+            int prev = prev(slot);
+            int next = next(slot);
+            if (prev == NONE) {
+                chain.head = next;
+            } else {
+                setNext(prev, next);
+            }
+            if (next == NONE) {
+                chain.tail = prev;
+            } else {
+                setPrev(next, prev);
+            }
+            setPrev(slot, UNLINKED);
+            setNext(slot, UNLINKED);
+            setChain(slot, null);
+            if (--chain.size == 0) {
+                // Drop empty chains so departed users do not accumulate
+                chain.retired = true;
+                chains.remove(userId, chain);
+            }
+        }
+    }
+
+    public int size(String userId) {
+        Chain chain = chains.get(userId);
+        if (chain == null) {
+            return 0;
+        }
+        synchronized (chain) {
+            return chain.size;
+        }
+    }
+
+    /**
+     * Visits up to {@code limit} slots of the user, in creation order, that follow the entry
+     * with sequence number {@code afterSeq} (0 to start from the beginning). {@code afterSlot}
+     * is a hint for where that entry was; if it has been removed, or belongs to another user,
+     * the chain is scanned instead.
+     * The visitor runs under the chain lock, so the visited slots cannot be released meanwhile.
+     *
+     * @return the sequence number of the last visited entry, or {@code afterSeq} if none
+     */
+    public long page(String userId, int afterSlot, long afterSeq, int limit, SlotVisitor visitor) {
+        Chain chain = chains.get(userId);
+        if (chain == null) {
+            return afterSeq;
+        }
+        synchronized (chain) {
+            int slot;
+            if (afterSeq == 0) {
+                slot = chain.head;
+            } else if (afterSlot >= 0 && afterSlot < capacity() && chainOf(afterSlot) == chain
+                    && seq(afterSlot) == afterSeq) {
+                slot = next(afterSlot);
+            } else {
+                slot = chain.head;
+                while (slot != NONE && seq(slot) <= afterSeq) {
+                    slot = next(slot);
+                }
+            }
+            long lastSeq = afterSeq;
+            for (int visited = 0; slot != NONE && visited < limit; visited++) {
+                visitor.visit(slot);
+                lastSeq = seq(slot);
+                slot = next(slot);
+            }
+            return lastSeq;
+        }
+    }
+
+    /** Sequence number of a linked slot. */
+    public long seq(int slot) {
+        return seqPages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+    }
+
+    interface SlotVisitor {
+        void visit(int slot);
+    }
+
+    private int capacity() {
+        return prevPages.length << PAGE_BITS;
+    }
+
+    private int prev(int slot) {
+        return prevPages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+    }
+
+    private int next(int slot) {
+        return nextPages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+    }
+
+    private Chain chainOf(int slot) {
+        return chainPages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+    }
+
+    private void setChain(int slot, Chain chain) {
+        chainPages[slot >>> PAGE_BITS][slot & PAGE_MASK] = chain;
+    }
+
+    private void setPrev(int slot, int value) {
+        prevPages[slot >>> PAGE_BITS][slot & PAGE_MASK] = value;
+    }
+
+    private void setNext(int slot, int value) {
+        nextPages[slot >>> PAGE_BITS][slot & PAGE_MASK] = value;
+    }
+
+    private void setSeq(int slot, long value) {
+        seqPages[slot >>> PAGE_BITS][slot & PAGE_MASK] = value;
+    }
+
+    private void ensureCapacity(int slot) {
+        int page = slot >>> PAGE_BITS;
+        if (page < prevPages.length) {
+            return;
+        }
+        synchronized (this) {
+            int pages = prevPages.length;
+            if (page < pages) {
+                return;
+            }
+            int[][] prev = Arrays.copyOf(prevPages, page + 1);
+            int[][] next = Arrays.copyOf(nextPages, page + 1);
+            long[][] seq = Arrays.copyOf(seqPages, page + 1);
+            Chain[][] chain = Arrays.copyOf(chainPages, page + 1);
+            for (int i = pages; i <= page; i++) {
+                prev[i] = new int[PAGE_SIZE];
+                next[i] = new int[PAGE_SIZE];
+                seq[i] = new long[PAGE_SIZE];
+                chain[i] = new Chain[PAGE_SIZE];
+                Arrays.fill(prev[i], UNLINKED);
+                Arrays.fill(next[i], UNLINKED);
+            }
+            seqPages = seq;
+            nextPages = next;
+            chainPages = chain;
+            // Published last: capacity() is derived from it
+            prevPages = prev;
+        }
+    }
+
+    private static final class Chain {
+        int head = NONE;
+        int tail = NONE;
+        int size;
+        boolean retired;
+    }
+}
@@ -0,0 +1,476 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+// ==================== Write-Ahead Log ====================
+
+/**
+ * Append-only binary log of link creations, clicks and deletions, replayed on startup.
+ * <p>
+ * The file starts with a header holding the key of the {@link FeistelShortCodeGenerator}
+ * that issued the logged codes, so a restarted service keeps generating unused codes.
+ * Each record follows as {@code [int length][int crc32c][payload]}, the payload starting
+ * with a type byte:
+ * <pre>
+ * CREATE  code long, user msb long, user lsb long, clickLimit int,
+ *         creation long, expiry long, url length int, url UTF-8 bytes
+ * CLICK   code long, click count int
+ * DELETE  code long
+ * </pre>
+ * Clicks carry the count after the click rather than an increment, so replaying them
+ * over a {@link LinkSnapshot} that already holds some of them is harmless. Creations and
+ * deletions take effect under the log lock ({@link #logCreate}, {@link #logDelete}), so a
+ * snapshot taken at {@link #position()} sees exactly the links logged before it.
+ * Appends only copy the record into a buffer. A background thread writes the buffer out
+ * and forces it to disk once per commit interval (group commit), so clicks never wait
+ * for the disk; callers that need a record to be durable wait with {@link #awaitDurable}.
+ * A torn or corrupt tail left by a crash is cut off when the log is replayed.
+ */
+class WriteAheadLog implements Closeable {
+    static final byte CREATE = 1;
+    static final byte CLICK = 2;
+    static final byte DELETE = 3;
+
+    private static final int MAGIC = 0x534C5741; // "SLWA"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int CLICK_RECORD_SIZE = RECORD_HEADER_SIZE + 1 + Long.BYTES + Integer.BYTES;
+    private static final int DELETE_RECORD_SIZE = RECORD_HEADER_SIZE + 1 + Long.BYTES;
+    private static final int CREATE_FIXED_SIZE = RECORD_HEADER_SIZE + 1 + 6 * Long.BYTES + 2 * Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long DEFAULT_CLICK_FLUSH_MILLIS = 1000;
+    private static final int DEFAULT_CLICK_FLUSH_THRESHOLD = 65_536;
+
+    private final FileChannel channel;
+    private final long generatorKey;
+    private final long commitIntervalMillis;
+    private final long clickFlushMillis;
+    private final int clickFlushThreshold;
+    private final Thread syncThread;
+    private final CRC32C crc = new CRC32C();
+    private final Object durableLock = new Object();
+
+    // Guarded by this: the pending buffer and every write to the channel
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long appended;
+    private boolean replayed;
+    private boolean closed;
+
+    // Guarded by durableLock
+    private long durable;
+    private IOException failure;
+
+    private WriteAheadLog(FileChannel channel, long generatorKey, long commitIntervalMillis,
+                          long clickFlushMillis, int clickFlushThreshold) {
+        this.channel = channel;
+        this.generatorKey = generatorKey;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.clickFlushMillis = clickFlushMillis;
+        this.clickFlushThreshold = clickFlushThreshold;
+        this.syncThread = new Thread(this::syncLoop, "wal-sync");
+        syncThread.setDaemon(true);
+    }
+
+    /**
+     * Opens the log at {@code file}, creating it with a fresh generator key if needed.
+     * Records must be replayed with {@link #replay} before anything is appended.
+     *
+     * @param commitIntervalMillis latency budget of a group commit
+     */
+    static WriteAheadLog open(Path file, long commitIntervalMillis) throws IOException {
+        return open(file, commitIntervalMillis, DEFAULT_CLICK_FLUSH_MILLIS, DEFAULT_CLICK_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * @param clickFlushMillis    how long clicks are coalesced before they are logged, see {@link ClickCoalescer}
+     * @param clickFlushThreshold number of links with unlogged clicks that triggers an early flush
+     */
+    static WriteAheadLog open(Path file, long commitIntervalMillis, long clickFlushMillis, int clickFlushThreshold)
+            throws IOException {
+        if (commitIntervalMillis <= 0 || clickFlushMillis <= 0 || clickFlushThreshold <= 0) {
+            throw new IllegalArgumentException("Intervals and threshold must be positive");
+        }
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            long key;
+            if (channel.size() < HEADER_SIZE) {
+                key = new SecureRandom().nextLong();
+                header.putInt(MAGIC).putInt(VERSION).putLong(key).flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.force(true);
+            } else {
+                channel.read(header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Не журнал ссылок: " + file);
+                }
+                key = header.getLong();
+            }
+            return new WriteAheadLog(channel, key, commitIntervalMillis, clickFlushMillis, clickFlushThreshold);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Key for the {@link FeistelShortCodeGenerator} of the service that owns this log. */
+    public long generatorKey() {
+        return generatorKey;
+    }
+
+    public void replay(Listener listener) throws IOException {
+        replay(listener, HEADER_SIZE);
+    }
+
+    public long clickFlushMillis() {
+        return clickFlushMillis;
+    }
+
+    public int clickFlushThreshold() {
+        return clickFlushThreshold;
+    }
+
+    /**
+     * Feeds every intact record from {@code fromPosition} on to {@code listener} in log order,
+     * cuts off a torn tail and starts the group commit thread. Called once, before the first append.
+     *
+     * @param fromPosition a {@link #position()} taken earlier, e.g. by a snapshot
+     */
+    public synchronized void replay(Listener listener, long fromPosition) throws IOException {
+        if (replayed) {
+            throw new IllegalStateException("Журнал уже прочитан");
+        }
+        long position = Math.max(fromPosition, HEADER_SIZE);
+        if (position > channel.size()) {
+            throw new IOException("Снимок новее журнала: позиция " + position + ", размер " + channel.size());
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(position)), 1 << 16));
+        byte[] payload = new byte[256];
+        CRC32C check = new CRC32C();
+        while (true) {
+            int length;
+            int expectedCrc;
+            try {
+                length = in.readInt();
+                expectedCrc = in.readInt();
+                if (length <= 0 || position + RECORD_HEADER_SIZE + length > channel.size()) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length << 1)];
+                }
+                in.readFully(payload, 0, length);
+            } catch (EOFException e) {
+                break;
+            }
+            check.reset();
+            check.update(payload, 0, length);
+            if ((int) check.getValue() != expectedCrc || !fits(payload[0], length)
+                    || !apply(ByteBuffer.wrap(payload, 0, length), listener)) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        // Everything after the last intact record is a torn write
+        channel.truncate(position);
+        channel.position(position);
+        appended = position;
+        synchronized (durableLock) {
+            durable = position;
+        }
+        replayed = true;
+        syncThread.start();
+    }
+
+    private static boolean fits(byte type, int length) {
+        switch (type) {
+            case CREATE:
+                return length >= CREATE_FIXED_SIZE - RECORD_HEADER_SIZE;
+            case CLICK:
+                return length == CLICK_RECORD_SIZE - RECORD_HEADER_SIZE;
+            default:
+                return length == DELETE_RECORD_SIZE - RECORD_HEADER_SIZE;
+        }
+    }
+
+    /** Decodes one record for the listener; false for a record this version cannot read. */
+    private static boolean apply(ByteBuffer record, Listener listener) {
+        byte type = record.get();
+        switch (type) {
+            case CREATE: {
+                long code = record.getLong();
+                UUID userId = new UUID(record.getLong(), record.getLong());
+                int clickLimit = record.getInt();
+                long creationMillis = record.getLong();
+                long expiryMillis = record.getLong();
+                int urlLength = record.getInt();
+                if (urlLength != record.remaining()) {
+                    return false;
+                }
+                String longUrl = new String(record.array(), record.arrayOffset() + record.position(),
+                        urlLength, StandardCharsets.UTF_8);
+                listener.created(code, longUrl, userId.toString(), clickLimit, creationMillis, expiryMillis);
+                return true;
+            }
+            case CLICK:
+                listener.clicked(record.getLong(), record.getInt());
+                return true;
+            case DELETE:
+                listener.deleted(record.getLong());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Log position after the last appended record. */
+    public synchronized long position() {
+        return appended;
+    }
+
+    /**
+     * Appends a creation and runs {@code publish}, which makes the link reachable, under the log lock.
+     *
+     * @return the log position to pass to {@link #awaitDurable}
+     */
+    public long logCreate(long code, String longUrl, String userId, int clickLimit,
+                          long creationMillis, long expiryMillis, Runnable publish) {
+        UUID user = UUID.fromString(userId);
+        byte[] url = longUrl.getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            ByteBuffer record = reserve(CREATE_FIXED_SIZE + url.length);
+            int start = record.position();
+            record.position(start + RECORD_HEADER_SIZE);
+            record.put(CREATE).putLong(code)
+                    .putLong(user.getMostSignificantBits()).putLong(user.getLeastSignificantBits())
+                    .putInt(clickLimit).putLong(creationMillis).putLong(expiryMillis)
+                    .putInt(url.length).put(url);
+            long position = seal(record, start);
+            publish.run();
+            return position;
+        }
+    }
+
+    /**
+     * Batch form of {@link #logCreate}: appends a creation for every request, all created at
+     * {@code creationMillis}, and runs {@code publish} once, under a single acquisition of the log lock.
+     *
+     * @return the log position after the last record, for {@link #awaitDurable}
+     */
+    public long logCreates(long[] codes, List<LinkRequest> requests, long creationMillis, long[] expiryMillis,
+                           Runnable publish) {
+        int count = requests.size();
+        long[] userMsb = new long[count];
+        long[] userLsb = new long[count];
+        byte[][] urls = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            LinkRequest request = requests.get(i);
+            UUID user = UUID.fromString(request.getUserId());
+            userMsb[i] = user.getMostSignificantBits();
+            userLsb[i] = user.getLeastSignificantBits();
+            urls[i] = request.getLongUrl().getBytes(StandardCharsets.UTF_8);
+        }
+        synchronized (this) {
+            long position = appended;
+            for (int i = 0; i < count; i++) {
+                ByteBuffer record = reserve(CREATE_FIXED_SIZE + urls[i].length);
+                int start = record.position();
+                record.position(start + RECORD_HEADER_SIZE);
+                record.put(CREATE).putLong(codes[i]).putLong(userMsb[i]).putLong(userLsb[i])
+                        .putInt(requests.get(i).getClickLimit()).putLong(creationMillis).putLong(expiryMillis[i])
+                        .putInt(urls[i].length).put(urls[i]);
+                position = seal(record, start);
+            }
+            publish.run();
+            return position;
+        }
+    }
+
+    /** Appends the click count of a link after one of its clicks was applied. */
+    public synchronized long logClick(long code, int clickCount) {
+        ByteBuffer record = reserve(CLICK_RECORD_SIZE);
+        int start = record.position();
+        record.position(start + RECORD_HEADER_SIZE);
+        record.put(CLICK).putLong(code).putInt(clickCount);
+        return seal(record, start);
+    }
+
+    /** Appends a deletion and runs {@code remove}, which removes the link, under the log lock. */
+    public synchronized long logDelete(long code, Runnable remove) {
+        ByteBuffer record = reserve(DELETE_RECORD_SIZE);
+        int start = record.position();
+        record.position(start + RECORD_HEADER_SIZE);
+        record.put(DELETE).putLong(code);
+        long position = seal(record, start);
+        remove.run();
+        return position;
+    }
+
+    /** Buffer with room for {@code size} more bytes, writing out pending records if necessary. */
+    private ByteBuffer reserve(int size) {
+        if (!replayed || closed) {
+            throw new IllegalStateException(closed ? "Журнал закрыт" : "Журнал не прочитан");
+        }
+        if (buffer.remaining() < size) {
+            writePending();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(size);
+            }
+        }
+        return buffer;
+    }
+
+    /** Fills in length and checksum of the record that starts at {@code start}. */
+    private long seal(ByteBuffer record, int start) {
+        int end = record.position();
+        int length = end - start - RECORD_HEADER_SIZE;
+        ByteBuffer payload = record.duplicate();
+        payload.position(start + RECORD_HEADER_SIZE).limit(end);
+        crc.reset();
+        crc.update(payload);
+        record.putInt(start, length);
+        record.putInt(start + Integer.BYTES, (int) crc.getValue());
+        appended += end - start;
+        return appended;
+    }
+
+    private void writePending() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Blocks until the log is on disk up to {@code position}, at most one commit interval
+     * plus the fsync time after the append.
+     *
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public void awaitDurable(long position) {
+        synchronized (durableLock) {
+            while (durable < position) {
+                if (failure != null) {
+                    throw new UncheckedIOException(failure);
+                }
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Ожидание записи журнала прервано", e);
+                }
+            }
+        }
+    }
+
+    private void syncLoop() {
+        while (true) {
+            try {
+                Thread.sleep(commitIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!commit()) {
+                return;
+            }
+        }
+    }
+
+    /** Writes and forces everything appended so far; false once the log is closed or failed. */
+    private boolean commit() {
+        long target;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            target = appended;
+            if (buffer.position() > 0) {
+                try {
+                    writePending();
+                } catch (UncheckedIOException e) {
+                    return false;
+                }
+            }
+        }
+        synchronized (durableLock) {
+            if (target <= durable || failure != null) {
+                return failure == null;
+            }
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+        synchronized (durableLock) {
+            durable = Math.max(durable, target);
+            durableLock.notifyAll();
+        }
+        return true;
+    }
+
+    private void fail(IOException e) {
+        synchronized (durableLock) {
+            if (failure == null) {
+                failure = e;
+            }
+            durableLock.notifyAll();
+        }
+    }
+
+    /** Commits the pending records and closes the file. */
+    @Override
+    public void close() throws IOException {
+        if (replayed) {
+            syncThread.interrupt();
+            try {
+                syncThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            commit();
+        }
+        synchronized (this) {
+            closed = true;
+        }
+        synchronized (durableLock) {
+            if (failure == null) {
+                failure = new IOException("Журнал закрыт");
+            }
+            durableLock.notifyAll();
+        }
+        channel.close();
+    }
+
+    /** Receives the records of {@link #replay}. */
+    interface Listener {
+        void created(long code, String longUrl, String userId, int clickLimit, long creationMillis, long expiryMillis);
+
+        /** The link reached {@code clickCount} clicks. */
+        void clicked(long code, int clickCount);
+
+        void deleted(long code);
+    }
+}